@@ -39,6 +39,30 @@ function lib.getInfoForZone()
     showWarning("adcolony.getInfoForZone()")
 end
 
+function lib.getStats()
+    showWarning("adcolony.getStats()")
+end
+
+function lib.getReadyZones()
+    showWarning("adcolony.getReadyZones()")
+end
+
+function lib.dumpLog()
+    showWarning("adcolony.dumpLog()")
+end
+
+function lib.ackReward()
+    showWarning("adcolony.ackReward()")
+end
+
+function lib.showOrLoad()
+    showWarning("adcolony.showOrLoad()")
+end
+
+function lib.getZoneHandle()
+    showWarning("adcolony.getZoneHandle()")
+end
+
 -------------------------------------------------------------------------------
 -- END
 -------------------------------------------------------------------------------
@@ -0,0 +1,328 @@
+//
+// SimulatedAdColonySdk.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony;
+
+import android.app.Activity;
+
+import com.adcolony.sdk.AdColonyAdOptions;
+import com.adcolony.sdk.AdColonyAppOptions;
+import com.adcolony.sdk.AdColonyInterstitial;
+import com.adcolony.sdk.AdColonyInterstitialListener;
+import com.adcolony.sdk.AdColonyReward;
+import com.adcolony.sdk.AdColonyRewardListener;
+import com.adcolony.sdk.AdColonyZone;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the AdColony ad network, installed into the plugin with {@link #install()}.
+ * <p/>
+ * Requests fill with a configurable probability after a random latency, filled ads expire after a fixed time,
+ * and shown ads open and close after fixed delays. Rewarded zones grant (or fail) a reward before closing.
+ * All listener callbacks run on the given scheduler, which plays the part of the UI thread.
+ * <p/>
+ * Every outcome is counted so that a load test can check the plugin's own bookkeeping against it.
+ */
+public final class SimulatedAdColonySdk implements AdColonySdk {
+    private final ScheduledExecutorService uiThread;
+    private final Random random;
+    private final ConcurrentHashMap<String, AdColonyZone> zones = new ConcurrentHashMap<>();
+    private volatile AdColonyRewardListener rewardListener = null;
+
+    // configuration
+    private volatile double fillRate = 1.0;
+    private volatile long minFillLatencyMs = 0;
+    private volatile long maxFillLatencyMs = 0;
+    private volatile long expiryMs = 60 * 60 * 1000;
+    private volatile long openDelayMs = 0;
+    private volatile long viewDurationMs = 0;
+    private volatile double rewardSuccessRate = 1.0;
+
+    // outcomes
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong fills = new AtomicLong();
+    private final AtomicLong noFills = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong shows = new AtomicLong();
+    private final AtomicLong failedShows = new AtomicLong();
+    private final AtomicLong rewardsGranted = new AtomicLong();
+    private final AtomicLong rewardsFailed = new AtomicLong();
+
+    // requests and shows whose callbacks have not run yet (expiry timers are not counted)
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public SimulatedAdColonySdk(ScheduledExecutorService uiThread, long seed) {
+        this.uiThread = uiThread;
+        this.random = new Random(seed);
+    }
+
+    // makes the plugin use this simulator (call before init())
+    public void install() {
+        LuaLoader.setSdk(this);
+    }
+
+    // makes the plugin use the real SDK again
+    public static void uninstall() {
+        LuaLoader.setSdk(null);
+    }
+
+    // -------------------------------------------------------------------
+    // configuration
+    // -------------------------------------------------------------------
+
+    public SimulatedAdColonySdk setFillRate(double fillRate) {
+        this.fillRate = fillRate;
+        return this;
+    }
+
+    public SimulatedAdColonySdk setFillLatency(long minMs, long maxMs) {
+        this.minFillLatencyMs = minMs;
+        this.maxFillLatencyMs = Math.max(minMs, maxMs);
+        return this;
+    }
+
+    public SimulatedAdColonySdk setExpiry(long expiryMs) {
+        this.expiryMs = expiryMs;
+        return this;
+    }
+
+    public SimulatedAdColonySdk setShowTimes(long openDelayMs, long viewDurationMs) {
+        this.openDelayMs = openDelayMs;
+        this.viewDurationMs = viewDurationMs;
+        return this;
+    }
+
+    public SimulatedAdColonySdk setRewardSuccessRate(double rewardSuccessRate) {
+        this.rewardSuccessRate = rewardSuccessRate;
+        return this;
+    }
+
+    public SimulatedAdColonySdk setRewardedZone(String zoneId, String rewardName, int rewardAmount) {
+        getZone(zoneId).setReward(rewardName, rewardAmount, 1, 1);
+        return this;
+    }
+
+    // -------------------------------------------------------------------
+    // outcomes
+    // -------------------------------------------------------------------
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFills() {
+        return fills.get();
+    }
+
+    public long getNoFills() {
+        return noFills.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    public long getShows() {
+        return shows.get();
+    }
+
+    public long getFailedShows() {
+        return failedShows.get();
+    }
+
+    public long getRewardsGranted() {
+        return rewardsGranted.get();
+    }
+
+    public long getRewardsFailed() {
+        return rewardsFailed.get();
+    }
+
+    // true when no request or show is waiting for its callbacks
+    public boolean isIdle() {
+        return inFlight.get() == 0;
+    }
+
+    // -------------------------------------------------------------------
+    // AdColonySdk
+    // -------------------------------------------------------------------
+
+    @Override
+    public boolean configure(Activity activity, AdColonyAppOptions appOptions, String appId, String... zoneIds) {
+        for (String zoneId : zoneIds) {
+            getZone(zoneId);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean setAppOptions(AdColonyAppOptions appOptions) {
+        return true;
+    }
+
+    @Override
+    public boolean requestInterstitial(final String zoneId, final AdColonyInterstitialListener listener, AdColonyAdOptions adOptions) {
+        requests.incrementAndGet();
+        inFlight.incrementAndGet();
+
+        final boolean fill;
+        final long latency;
+        synchronized (random) {
+            fill = random.nextDouble() < fillRate;
+            latency = minFillLatencyMs + (long) (random.nextDouble() * (maxFillLatencyMs - minFillLatencyMs));
+        }
+
+        uiThread.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (fill) {
+                        fills.incrementAndGet();
+                        SimulatedInterstitial ad = new SimulatedInterstitial(zoneId, listener);
+                        ad.scheduleExpiry();
+                        listener.onRequestFilled(ad);
+                    } else {
+                        noFills.incrementAndGet();
+                        listener.onRequestNotFilled(getZone(zoneId));
+                    }
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        }, latency, TimeUnit.MILLISECONDS);
+
+        return true;
+    }
+
+    @Override
+    public AdColonyZone getZone(String zoneId) {
+        AdColonyZone zone = zones.get(zoneId);
+        if (zone == null) {
+            AdColonyZone created = new AdColonyZone(zoneId);
+            zone = zones.putIfAbsent(zoneId, created);
+            if (zone == null) {
+                zone = created;
+            }
+        }
+        return zone;
+    }
+
+    @Override
+    public boolean setRewardListener(AdColonyRewardListener listener) {
+        rewardListener = listener;
+        return true;
+    }
+
+    @Override
+    public boolean removeRewardListener() {
+        rewardListener = null;
+        return true;
+    }
+
+    // -------------------------------------------------------------------
+    // simulated ads
+    // -------------------------------------------------------------------
+
+    private final class SimulatedInterstitial extends AdColonyInterstitial {
+        private final AtomicInteger state = new AtomicInteger(READY);
+
+        private static final int READY = 0;
+        private static final int SHOWN = 1;
+        private static final int EXPIRED = 2;
+        private static final int DESTROYED = 3;
+
+        SimulatedInterstitial(String zoneId, AdColonyInterstitialListener listener) {
+            super(zoneId, listener);
+        }
+
+        void scheduleExpiry() {
+            uiThread.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (state.compareAndSet(READY, EXPIRED)) {
+                        expirations.incrementAndGet();
+                        AdColonyInterstitialListener listener = getListener();
+                        if (listener != null) {
+                            listener.onExpiring(SimulatedInterstitial.this);
+                        }
+                    }
+                }
+            }, expiryMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        @Override
+        public boolean show() {
+            if (!state.compareAndSet(READY, SHOWN)) {
+                failedShows.incrementAndGet();
+                return false;
+            }
+
+            shows.incrementAndGet();
+            inFlight.incrementAndGet();
+
+            uiThread.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    AdColonyInterstitialListener listener = getListener();
+                    if (listener != null) {
+                        listener.onOpened(SimulatedInterstitial.this);
+                    }
+                }
+            }, openDelayMs, TimeUnit.MILLISECONDS);
+
+            uiThread.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        AdColonyZone zone = getZone(getZoneID());
+                        AdColonyRewardListener currentRewardListener = rewardListener;
+                        if (zone.isRewarded() && (currentRewardListener != null)) {
+                            boolean success;
+                            synchronized (random) {
+                                success = random.nextDouble() < rewardSuccessRate;
+                            }
+                            if (success) {
+                                rewardsGranted.incrementAndGet();
+                            } else {
+                                rewardsFailed.incrementAndGet();
+                            }
+                            currentRewardListener.onReward(
+                                    new AdColonyReward(getZoneID(), zone.getRewardName(), zone.getRewardAmount(), success));
+                        }
+
+                        AdColonyInterstitialListener listener = getListener();
+                        if (listener != null) {
+                            listener.onClosed(SimulatedInterstitial.this);
+                        }
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                }
+            }, openDelayMs + viewDurationMs, TimeUnit.MILLISECONDS);
+
+            return true;
+        }
+
+        @Override
+        public boolean destroy() {
+            state.set(DESTROYED);
+            return super.destroy();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+//
+// ApiBenchmark.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lua API calls: the per-frame isLoaded() (by zone name and by handle) and getReadyZones() checks and the option parsing in init() and load() (single and batched).
+ * <p/>
+ * Run with "-prof gc" to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiBenchmark {
+    private PluginHarness harness;
+    private Map<String, Object> initOptions;
+    private Map<String, Object> loadOptions;
+    private List<Object> allZones;
+    private Object interstitialHandle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        harness = new PluginHarness();
+        initOptions = PluginHarness.defaultOptions("json");
+        harness.init(initOptions);
+
+        loadOptions = new LinkedHashMap<>();
+        loadOptions.put("prePopup", true);
+        loadOptions.put("postPopup", false);
+
+        allZones = Arrays.<Object>asList(PluginHarness.INTERSTITIAL_ZONE, PluginHarness.REWARDED_ZONE);
+        interstitialHandle = harness.call("getZoneHandle", PluginHarness.INTERSTITIAL_ZONE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.exit();
+    }
+
+    @Benchmark
+    public Object isLoaded() {
+        return harness.call("isLoaded", PluginHarness.INTERSTITIAL_ZONE);
+    }
+
+    @Benchmark
+    public Object isLoadedByHandle() {
+        return harness.call("isLoaded", interstitialHandle);
+    }
+
+    @Benchmark
+    public Object isLoadedUnknownZone() {
+        return harness.call("isLoaded", "unknown");
+    }
+
+    // one call for the readiness of every zone
+    @Benchmark
+    public int getReadyZones() {
+        return harness.invoke("getReadyZones");
+    }
+
+    @Benchmark
+    public Object load() {
+        return harness.call("load", PluginHarness.REWARDED_ZONE, loadOptions);
+    }
+
+    @Benchmark
+    public Object loadAllZones() {
+        return harness.call("load", allZones, loadOptions);
+    }
+
+    // init() can only be called once per runtime, so every call is paired with the exit that releases it
+    @Benchmark
+    public int initAndExit() {
+        harness.init(initOptions);
+        harness.exit();
+        return harness.eventCount;
+    }
+}
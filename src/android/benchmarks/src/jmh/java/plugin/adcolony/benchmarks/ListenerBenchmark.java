@@ -0,0 +1,134 @@
+//
+// ListenerBenchmark.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony.benchmarks;
+
+import com.adcolony.sdk.AdColony;
+import com.adcolony.sdk.AdColonyInterstitial;
+import com.adcolony.sdk.AdColonyInterstitialListener;
+import com.adcolony.sdk.AdColonyReward;
+import com.adcolony.sdk.AdColonyRewardListener;
+import com.adcolony.sdk.AdColonyZone;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SDK callbacks: building each event payload and delivering it to the Lua listener through dispatchLuaEvent().
+ * <p/>
+ * eventDataFormat selects between the JSON-encoded and the table form of event.data.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerBenchmark {
+    private static final int SUSPENDED_CYCLES = 100;
+
+    @Param({"json", "table"})
+    public String eventDataFormat;
+
+    private PluginHarness harness;
+    private AdColonyInterstitialListener listener;
+    private AdColonyRewardListener rewardListener;
+    private AdColonyInterstitial ad;
+    private AdColonyZone zone;
+    private AdColonyReward reward;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        harness = new PluginHarness();
+        harness.init(PluginHarness.defaultOptions(eventDataFormat));
+
+        zone = AdColony.getZone(PluginHarness.REWARDED_ZONE_ID);
+        zone.setReward("coins", 10, 1, 1);
+
+        harness.call("load", PluginHarness.REWARDED_ZONE);
+        listener = harness.lastRequestListener();
+        rewardListener = AdColony.getRewardListener();
+        ad = new AdColonyInterstitial(PluginHarness.REWARDED_ZONE_ID, listener);
+        reward = new AdColonyReward(PluginHarness.REWARDED_ZONE_ID, "coins", 10, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.exit();
+    }
+
+    // the filled ad replaces the one held from the previous invocation
+    @Benchmark
+    public int onRequestFilled() {
+        listener.onRequestFilled(ad);
+        return harness.eventCount;
+    }
+
+    @Benchmark
+    public int onRequestNotFilled() {
+        listener.onRequestNotFilled(zone);
+        return harness.eventCount;
+    }
+
+    @Benchmark
+    public int onOpened() {
+        listener.onOpened(ad);
+        return harness.eventCount;
+    }
+
+    @Benchmark
+    public int onClicked() {
+        listener.onClicked(ad);
+        return harness.eventCount;
+    }
+
+    @Benchmark
+    public int onClosed() {
+        listener.onClosed(ad);
+        return harness.eventCount;
+    }
+
+    @Benchmark
+    public int onExpiring() {
+        listener.onExpiring(ad);
+        return harness.eventCount;
+    }
+
+    @Benchmark
+    public int onReward() {
+        rewardListener.onReward(reward);
+        return harness.eventCount;
+    }
+
+    // an ad expiring and refilling many times while the app is in the background; only the last event is delivered
+    @Benchmark
+    @OperationsPerInvocation(SUSPENDED_CYCLES)
+    public int suspendedExpireAndRefill() {
+        harness.loader.onSuspended(harness.runtime);
+        for (int i = 0; i < SUSPENDED_CYCLES; i++) {
+            listener.onExpiring(ad);
+            listener.onRequestFilled(ad);
+        }
+        harness.loader.onResumed(harness.runtime);
+        return harness.eventCount;
+    }
+}
@@ -0,0 +1,223 @@
+//
+// PluginHarness.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony.benchmarks;
+
+import android.os.Looper;
+
+import com.adcolony.sdk.AdColony;
+import com.adcolony.sdk.AdColonyInterstitialListener;
+import com.ansca.corona.CoronaActivity;
+import com.ansca.corona.CoronaEnvironment;
+import com.ansca.corona.CoronaRuntime;
+import com.naef.jnlua.JavaFunction;
+import com.naef.jnlua.LuaState;
+import com.naef.jnlua.LuaType;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import plugin.adcolony.LuaLoader;
+
+/**
+ * Loads the plugin into the stand-in Corona runtime and calls its Lua API the way a Lua script would.
+ * <p/>
+ * By default everything runs on the calling thread: the stand-in task dispatcher and runOnUiThread() run their
+ * work inline, so a benchmark measures the whole path from the Lua call to the Lua listener. Load tests pass
+ * executors for the Lua and UI threads instead and must then make every call() on the Lua thread.
+ */
+final class PluginHarness {
+    static final String LIB_NAME = "plugin.adcolony";
+    static final String APP_ID = "app0123456789";
+    static final String INTERSTITIAL_ZONE = "interstitial";
+    static final String REWARDED_ZONE = "rewarded";
+    static final String INTERSTITIAL_ZONE_ID = "vz0123456789abcdef";
+    static final String REWARDED_ZONE_ID = "vz9876543210fedcba";
+
+    private static final Executor INLINE = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    final LuaState L = new LuaState();
+    final CoronaRuntime runtime;
+    final LuaLoader loader;
+
+    // events received by the Lua listener
+    int eventCount = 0;
+    String lastPhase = null;
+
+    private final Map<String, JavaFunction> functions = new LinkedHashMap<>();
+
+    final JavaFunction listener = new JavaFunction() {
+        @Override
+        public int invoke(LuaState L) {
+            // read the event the way a typical listener does
+            L.getField(-1, "phase");
+            lastPhase = L.toString(-1);
+            L.pop(1);
+            eventCount++;
+            return 0;
+        }
+    };
+
+    PluginHarness() {
+        this(INLINE, INLINE);
+    }
+
+    PluginHarness(Executor luaThread, Executor uiThread) {
+        runtime = new CoronaRuntime(L, luaThread);
+        CoronaEnvironment.setCoronaActivity(new CoronaActivity(uiThread));
+        Looper.getMainLooper().setExecutor(uiThread);
+
+        loader = new LuaLoader();
+        loader.onLoaded(runtime);
+
+        // require("plugin.adcolony")
+        L.setTop(0);
+        L.pushString(LIB_NAME);
+        loader.invoke(L);
+        for (L.pushNil(); L.next(-2); L.pop(1)) {
+            functions.put(L.toString(-2), L.toJavaFunction(-1));
+        }
+        L.setTop(0);
+    }
+
+    // options used by init() unless a benchmark passes its own
+    static Map<String, Object> defaultOptions(String eventDataFormat) {
+        Map<String, Object> rewarded = new LinkedHashMap<>();
+        rewarded.put("id", REWARDED_ZONE_ID);
+        rewarded.put("poolSize", 1);
+
+        Map<String, Object> adZones = new LinkedHashMap<>();
+        adZones.put(INTERSTITIAL_ZONE, INTERSTITIAL_ZONE_ID);
+        adZones.put(REWARDED_ZONE, rewarded);
+
+        Map<String, Object> privacyFrameworks = new LinkedHashMap<>();
+        privacyFrameworks.put("gdpr", true);
+        privacyFrameworks.put("ccpa", false);
+
+        Map<String, Object> privacyConsents = new LinkedHashMap<>();
+        privacyConsents.put("gdpr", true);
+
+        Map<String, Object> options = new LinkedHashMap<>();
+        options.put("appId", APP_ID);
+        options.put("adZones", adZones);
+        options.put("adOrientation", "portrait");
+        options.put("userId", "benchmark-user");
+        options.put("debugLogging", false);
+        options.put("eventDataFormat", eventDataFormat);
+        options.put("privacyFrameworks", privacyFrameworks);
+        options.put("privacyConsents", privacyConsents);
+        return options;
+    }
+
+    void init(Map<String, Object> options) {
+        init(options, listener);
+    }
+
+    void init(Map<String, Object> options, JavaFunction listener) {
+        call("init", listener, options);
+    }
+
+    // releases everything init() set up, like the Corona runtime does when the activity is destroyed
+    void exit() {
+        loader.onExiting(runtime);
+        loader.onLoaded(runtime);
+    }
+
+    // the listener of the most recent ad request
+    AdColonyInterstitialListener lastRequestListener() {
+        return AdColony.lastRequestListener();
+    }
+
+    // calls a plugin function with the given arguments and returns its first result (or null, tables as Maps)
+    Object call(String name, Object... args) {
+        int nresults = invoke(name, args);
+        Object result = (nresults > 0) ? toJava(L.getTop() - nresults + 1) : null;
+        L.setTop(0);
+
+        return result;
+    }
+
+    // calls a plugin function and leaves its results on the stack (until the next call), returns their number
+    int invoke(String name, Object... args) {
+        JavaFunction function = functions.get(name);
+        if (function == null) {
+            throw new IllegalArgumentException("no plugin function named " + name);
+        }
+
+        L.setTop(0);
+        for (Object arg : args) {
+            push(arg);
+        }
+
+        return function.invoke(L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void push(Object value) {
+        if (value == null) {
+            L.pushNil();
+        } else if (value instanceof Boolean) {
+            L.pushBoolean((Boolean) value);
+        } else if (value instanceof Number) {
+            L.pushNumber(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            L.pushString((String) value);
+        } else if (value instanceof JavaFunction) {
+            L.pushJavaFunction((JavaFunction) value);
+        } else if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            L.newTable(0, map.size());
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                push(entry.getValue());
+                L.setField(-2, entry.getKey());
+            }
+        } else if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            L.newTable(list.size(), 0);
+            for (int i = 0; i < list.size(); i++) {
+                push(list.get(i));
+                L.rawSet(-2, i + 1);
+            }
+        } else {
+            throw new IllegalArgumentException("unsupported argument type " + value.getClass().getName());
+        }
+    }
+
+    // converts a stack value to Java, tables become Maps
+    Object toJava(int index) {
+        if (index < 0) {
+            index = L.getTop() + index + 1;
+        }
+
+        LuaType type = L.type(index);
+        if (type == LuaType.BOOLEAN) {
+            return L.toBoolean(index);
+        } else if (type == LuaType.NUMBER) {
+            return L.toNumber(index);
+        } else if (type == LuaType.STRING) {
+            return L.toString(index);
+        } else if (type == LuaType.TABLE) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (L.pushNil(); L.next(index); L.pop(1)) {
+                String key = (L.type(-2) == LuaType.NUMBER) ? String.valueOf(L.toInteger(-2)) : L.toString(-2);
+                map.put(key, toJava(-1));
+            }
+            return map;
+        } else if (type == LuaType.NIL || type == null) {
+            return null;
+        }
+        return type;
+    }
+}
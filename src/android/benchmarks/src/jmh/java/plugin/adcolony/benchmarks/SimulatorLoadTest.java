@@ -0,0 +1,709 @@
+//
+// SimulatorLoadTest.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony.benchmarks;
+
+import android.content.ComponentCallbacks2;
+
+import com.ansca.corona.CoronaEnvironment;
+import com.naef.jnlua.JavaFunction;
+import com.naef.jnlua.LuaState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import plugin.adcolony.SimulatedAdColonySdk;
+
+/**
+ * Drives load/show cycles through the plugin against {@link SimulatedAdColonySdk} and checks the results.
+ * <p/>
+ * The plugin runs with a separate Lua thread and UI thread, like on a device. Every zone loads an ad, shows it
+ * once it is loaded, and loads again once it has closed, until each zone has completed the requested number of
+ * cycles. The Lua events received and the plugin's getStats() counters are then checked against the outcomes
+ * counted by the simulator.
+ * <p/>
+ * Every load() is followed by extraLoads more, like impatient UI code would, which the plugin has to answer without
+ * sending more requests.
+ * <p/>
+ * The cycles are followed by scenarios that each init() the plugin with options of their own and check how it
+ * handles one situation: maxHeldAds and zone priorities, memory trim levels, prefetch, restarts with the same and
+ * with changed options, a showOrLoad() timeout and show() falling back to another zone.
+ * <p/>
+ * Arguments are key=value pairs: cycles, fillRate, minLatencyMs, maxLatencyMs, openMs, viewMs, expiryMs,
+ * rewardSuccessRate, extraLoads, prefetch (init option, 0 or 1), scenarios (0 or 1), seed and timeoutS. Exits with
+ * status 1 if a check fails.
+ */
+public final class SimulatorLoadTest {
+    private static final String[] ZONES = {PluginHarness.INTERSTITIAL_ZONE, PluginHarness.REWARDED_ZONE};
+
+    // per zone driver state, only touched on the Lua thread
+    private static final class ZoneDriver {
+        final String zoneName;
+        final int targetCycles;
+        int cycles = 0;
+        boolean showing = false;
+        boolean done = false;
+
+        ZoneDriver(String zoneName, int targetCycles) {
+            this.zoneName = zoneName;
+            this.targetCycles = targetCycles;
+        }
+    }
+
+    private final Map<String, String> args;
+    private final ExecutorService luaThread = Executors.newSingleThreadExecutor(namedThreads("lua"));
+    private final ScheduledExecutorService uiThread = Executors.newSingleThreadScheduledExecutor(namedThreads("ui"));
+    private final SimulatedAdColonySdk sdk;
+    private final PluginHarness harness;
+    private final Map<String, ZoneDriver> drivers = new LinkedHashMap<>();
+    private final int extraLoads;
+    private final CountDownLatch initialized = new CountDownLatch(1);
+    private final CountDownLatch finished = new CountDownLatch(ZONES.length);
+
+    // events received by the listener (Lua thread only)
+    private final Map<String, Integer> eventCounts = new LinkedHashMap<>();
+    private int misroutedEvents = 0;
+    private int failedRewardEvents = 0; // reward events without data are sent for rewards that were not granted
+
+    // events received by the scenario listener (Lua thread only)
+    private final List<Map<String, Object>> scenarioEvents = new ArrayList<>();
+
+    private SimulatorLoadTest(Map<String, String> args) {
+        this.args = args;
+
+        sdk = new SimulatedAdColonySdk(uiThread, longArg("seed", 1))
+                .setFillRate(doubleArg("fillRate", 0.8))
+                .setFillLatency(longArg("minLatencyMs", 0), longArg("maxLatencyMs", 5))
+                .setShowTimes(longArg("openMs", 0), longArg("viewMs", 1))
+                .setExpiry(longArg("expiryMs", 60 * 60 * 1000))
+                .setRewardSuccessRate(doubleArg("rewardSuccessRate", 0.9))
+                .setRewardedZone(PluginHarness.REWARDED_ZONE_ID, "coins", 10);
+        sdk.install();
+
+        harness = new PluginHarness(luaThread, uiThread);
+
+        extraLoads = (int) longArg("extraLoads", 1);
+        int cycles = (int) longArg("cycles", 2000);
+        for (String zoneName : ZONES) {
+            drivers.put(zoneName, new ZoneDriver(zoneName, cycles));
+        }
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = new LinkedHashMap<>();
+        for (String arg : argv) {
+            int i = arg.indexOf('=');
+            if (i <= 0) {
+                System.err.println("Expected key=value, got " + arg);
+                System.exit(2);
+            }
+            args.put(arg.substring(0, i), arg.substring(i + 1));
+        }
+
+        SimulatorLoadTest test = new SimulatorLoadTest(args);
+        boolean passed;
+        try {
+            passed = test.run();
+        } finally {
+            test.shutdown();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        final long timeoutS = longArg("timeoutS", 120);
+        final long startTime = System.nanoTime();
+
+        onLuaThread(new Callable<Object>() {
+            @Override
+            public Object call() {
+                Map<String, Object> options = PluginHarness.defaultOptions("table");
+                options.put("prefetch", longArg("prefetch", 0) != 0);
+                harness.init(options, listener);
+                return null;
+            }
+        });
+
+        if (!initialized.await(timeoutS, TimeUnit.SECONDS) || !finished.await(timeoutS, TimeUnit.SECONDS)) {
+            System.out.println("FAILED: timed out after " + timeoutS + "s");
+            return false;
+        }
+        double elapsedS = (System.nanoTime() - startTime) / 1e9;
+
+        // let requests started by the last cycles (pool refills) finish and their events arrive
+        awaitQuiescence(timeoutS);
+
+        @SuppressWarnings("unchecked")
+        final Map<String, Map<String, Object>> stats = (Map<String, Map<String, Object>>) onLuaThread(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return harness.call("getStats");
+            }
+        });
+
+        long cycles = 0;
+        for (ZoneDriver driver : drivers.values()) {
+            cycles += driver.cycles;
+        }
+        System.out.printf("%d cycles in %.2fs: %.0f cycles/s, %.0f events/s%n",
+                cycles, elapsedS, cycles / elapsedS, totalEvents() / elapsedS);
+        System.out.println("simulator: requests=" + sdk.getRequests() + " fills=" + sdk.getFills()
+                + " noFills=" + sdk.getNoFills() + " shows=" + sdk.getShows() + " rewards=" + sdk.getRewardsGranted()
+                + " failedRewards=" + sdk.getRewardsFailed() + " expirations=" + sdk.getExpirations()
+                + " rejectedShows=" + sdk.getFailedShows());
+        System.out.println("events: " + eventCounts);
+        for (String zoneName : ZONES) {
+            System.out.println(zoneName + ": " + stats.get(zoneName));
+        }
+
+        boolean passed = true;
+        passed &= check("completed cycles", cycles, (long) ZONES.length * drivers.get(ZONES[0]).targetCycles);
+        passed &= check("plugin requests", sum(stats, "requests"), sdk.getRequests());
+        passed &= check("plugin fills", sum(stats, "fills"), sdk.getFills());
+        passed &= check("plugin noFills", sum(stats, "noFills"), sdk.getNoFills());
+        // the plugin counts a show and sends "displayed" before the SDK can reject an expired ad
+        passed &= check("plugin shows", sum(stats, "shows"), sdk.getShows() + sdk.getFailedShows());
+        passed &= check("plugin rewards", sum(stats, "rewards"), sdk.getRewardsGranted());
+        // load() answers from an ad that is already held with a 'loaded' event of its own
+        passed &= check("loaded events", events("loaded"), sdk.getFills() + sum(stats, "loadsAlreadyReady"));
+        passed &= check("failed events", events("failed"), sdk.getNoFills());
+        passed &= check("displayed events", events("displayed"), sdk.getShows() + sdk.getFailedShows());
+        passed &= check("closed events", events("closed"), sdk.getShows());
+        passed &= check("reward events", events("reward") - failedRewardEvents, sdk.getRewardsGranted());
+        passed &= check("failed reward events", failedRewardEvents, sdk.getRewardsFailed());
+        passed &= check("expired events", events("expired"), sdk.getExpirations());
+        passed &= check("misrouted events", misroutedEvents, 0);
+
+        if (longArg("scenarios", 1) != 0) {
+            passed &= runScenarios(timeoutS);
+        }
+
+        System.out.println(passed ? "PASSED" : "FAILED");
+        return passed;
+    }
+
+    // the Lua listener: counts events and drives the next step of the zone's cycle
+    private final JavaFunction listener = new JavaFunction() {
+        @Override
+        public int invoke(LuaState L) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> event = (Map<String, Object>) harness.toJava(-1);
+            final String phase = (String) event.get("phase");
+
+            Integer count = eventCounts.get(phase);
+            eventCounts.put(phase, (count == null) ? 1 : count + 1);
+
+            if (phase.equals("init")) {
+                initialized.countDown();
+                for (final ZoneDriver driver : drivers.values()) {
+                    later(new Runnable() {
+                        @Override
+                        public void run() {
+                            load(driver);
+                        }
+                    });
+                }
+                return 0;
+            }
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> data = (Map<String, Object>) event.get("data");
+            if ((data == null) && phase.equals("reward")) {
+                failedRewardEvents++;
+                return 0;
+            }
+
+            final ZoneDriver driver = (data != null) ? drivers.get(data.get("zoneName")) : null;
+            if (driver == null) {
+                misroutedEvents++;
+                return 0;
+            }
+
+            boolean rewardedZone = driver.zoneName.equals(PluginHarness.REWARDED_ZONE);
+            if (rewardedZone != "rewardedVideo".equals(event.get("type"))) {
+                misroutedEvents++;
+            }
+
+            if (phase.equals("closed")) {
+                driver.showing = false;
+                driver.cycles++;
+                if (driver.cycles >= driver.targetCycles) {
+                    driver.done = true;
+                    finished.countDown();
+                    return 0;
+                }
+            } else if (phase.equals("expired")) {
+                // the ad being shown may have expired before show() got to it, in which case it never closes
+                driver.showing = false;
+            }
+
+            if (!driver.done && !driver.showing
+                    && (phase.equals("loaded") || phase.equals("closed") || phase.equals("failed") || phase.equals("expired"))) {
+                later(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (driver.done || driver.showing) {
+                            return;
+                        }
+                        if (Boolean.TRUE.equals(harness.call("isLoaded", driver.zoneName))) {
+                            driver.showing = true;
+                            harness.call("show", driver.zoneName);
+                        } else if (!phase.equals("loaded")) {
+                            load(driver);
+                        }
+                    }
+                });
+            }
+
+            return 0;
+        }
+    };
+
+    // -------------------------------------------------------------------
+    // scenarios
+    // -------------------------------------------------------------------
+
+    private boolean runScenarios(long timeoutS) throws Exception {
+        // every fill arrives, right away unless a scenario says otherwise
+        sdk.setFillRate(1.0).setFillLatency(0, 0);
+
+        boolean passed = true;
+        passed &= maxHeldAdsScenario(timeoutS);
+        passed &= trimMemoryScenario(timeoutS);
+        passed &= prefetchScenario(timeoutS);
+        passed &= warmStartScenario(timeoutS);
+        passed &= changedOptionsScenario(timeoutS);
+        passed &= showOrLoadTimeoutScenario(timeoutS);
+        passed &= fallbackScenario(timeoutS);
+        return passed;
+    }
+
+    // a fill for a more important zone evicts the ad of a less important one once maxHeldAds is reached
+    private boolean maxHeldAdsScenario(long timeoutS) throws Exception {
+        Map<String, Object> options = PluginHarness.defaultOptions("table");
+        options.put("maxHeldAds", 1);
+        zoneOptions(options, PluginHarness.REWARDED_ZONE).put("priority", 1);
+        Map<String, Object> init = startScenario("maxHeldAds", options, timeoutS);
+
+        boolean passed = check("maxHeldAds: warmStart", init.get("warmStart"), false);
+        call("load", PluginHarness.INTERSTITIAL_ZONE);
+        passed &= check("maxHeldAds: interstitial loaded", awaitEvent("loaded", PluginHarness.INTERSTITIAL_ZONE, timeoutS) != null, true);
+        call("load", PluginHarness.REWARDED_ZONE);
+        Map<String, Object> expired = awaitEvent("expired", PluginHarness.INTERSTITIAL_ZONE, timeoutS);
+        passed &= check("maxHeldAds: interstitial expired", expired != null, true);
+        awaitQuiescence(timeoutS);
+
+        passed &= check("maxHeldAds: expired reason", (expired != null) ? data(expired).get("reason") : null, "evicted");
+        passed &= check("maxHeldAds: interstitial evictions", stat(PluginHarness.INTERSTITIAL_ZONE, "evictions"), 1);
+        passed &= check("maxHeldAds: rewarded evictions", stat(PluginHarness.REWARDED_ZONE, "evictions"), 0);
+        passed &= check("maxHeldAds: interstitial isLoaded", call("isLoaded", PluginHarness.INTERSTITIAL_ZONE), false);
+        passed &= check("maxHeldAds: rewarded isLoaded", call("isLoaded", PluginHarness.REWARDED_ZONE), true);
+        return passed;
+    }
+
+    // each trim level releases what it should: extra pool slots, then less important zones, then everything
+    private boolean trimMemoryScenario(long timeoutS) throws Exception {
+        Map<String, Object> options = PluginHarness.defaultOptions("table");
+        zoneOptions(options, PluginHarness.INTERSTITIAL_ZONE).put("poolSize", 2);
+        zoneOptions(options, PluginHarness.REWARDED_ZONE).put("priority", 1);
+        Map<String, Object> init = startScenario("trimMemory", options, timeoutS);
+
+        boolean passed = check("trimMemory: warmStart", init.get("warmStart"), false);
+        call("load", PluginHarness.INTERSTITIAL_ZONE);
+        call("load", PluginHarness.REWARDED_ZONE);
+        awaitQuiescence(timeoutS);
+        passed &= check("trimMemory: interstitial fills", stat(PluginHarness.INTERSTITIAL_ZONE, "fills"), 2);
+
+        // running low: multi-slot pools keep one ad
+        trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW, timeoutS);
+        passed &= check("trimMemory: low, interstitial releases", stat(PluginHarness.INTERSTITIAL_ZONE, "memoryReleases"), 1);
+        passed &= check("trimMemory: low, rewarded releases", stat(PluginHarness.REWARDED_ZONE, "memoryReleases"), 0);
+
+        // running critical: only the highest priority zone keeps its ad
+        trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, timeoutS);
+        passed &= check("trimMemory: critical, interstitial releases", stat(PluginHarness.INTERSTITIAL_ZONE, "memoryReleases"), 2);
+        passed &= check("trimMemory: critical, rewarded releases", stat(PluginHarness.REWARDED_ZONE, "memoryReleases"), 0);
+        passed &= check("trimMemory: critical, rewarded isLoaded", call("isLoaded", PluginHarness.REWARDED_ZONE), true);
+
+        // running moderate releases nothing, complete releases everything
+        trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, timeoutS);
+        passed &= check("trimMemory: moderate, rewarded releases", stat(PluginHarness.REWARDED_ZONE, "memoryReleases"), 0);
+        trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE, timeoutS);
+        passed &= check("trimMemory: complete, rewarded releases", stat(PluginHarness.REWARDED_ZONE, "memoryReleases"), 1);
+        passed &= check("trimMemory: complete, rewarded isLoaded", call("isLoaded", PluginHarness.REWARDED_ZONE), false);
+
+        List<Map<String, Object>> expired = events("expired", null);
+        passed &= check("trimMemory: expired events", expired.size(), 3);
+        for (Map<String, Object> event : expired) {
+            passed &= check("trimMemory: expired reason", data(event).get("reason"), "lowMemory");
+        }
+        return passed;
+    }
+
+    // with prefetch, the ad that closes is replaced without another load()
+    private boolean prefetchScenario(long timeoutS) throws Exception {
+        Map<String, Object> options = PluginHarness.defaultOptions("table");
+        options.put("prefetch", true);
+        Map<String, Object> init = startScenario("prefetch", options, timeoutS);
+
+        boolean passed = check("prefetch: warmStart", init.get("warmStart"), false);
+        call("load", PluginHarness.INTERSTITIAL_ZONE);
+        passed &= check("prefetch: loaded", awaitEvent("loaded", PluginHarness.INTERSTITIAL_ZONE, timeoutS) != null, true);
+        call("show", PluginHarness.INTERSTITIAL_ZONE);
+        passed &= check("prefetch: closed", awaitEvent("closed", PluginHarness.INTERSTITIAL_ZONE, timeoutS) != null, true);
+        awaitQuiescence(timeoutS);
+
+        passed &= check("prefetch: prefetches", stat(PluginHarness.INTERSTITIAL_ZONE, "prefetches"), 1);
+        passed &= check("prefetch: fills", stat(PluginHarness.INTERSTITIAL_ZONE, "fills"), 2);
+        passed &= check("prefetch: isLoaded", call("isLoaded", PluginHarness.INTERSTITIAL_ZONE), true);
+        return passed;
+    }
+
+    // an init() with the same options after onExiting() keeps the ads and delivers the events held in between
+    private boolean warmStartScenario(long timeoutS) throws Exception {
+        Map<String, Object> options = warmStartOptions();
+        Map<String, Object> init = startScenario("warmStart", options, timeoutS);
+
+        boolean passed = check("warmStart: first warmStart", init.get("warmStart"), false);
+        call("load", PluginHarness.REWARDED_ZONE);
+        passed &= check("warmStart: rewarded loaded", awaitEvent("loaded", PluginHarness.REWARDED_ZONE, timeoutS) != null, true);
+
+        // the interstitial fills while there is no listener
+        sdk.setFillLatency(50, 50);
+        call("load", PluginHarness.INTERSTITIAL_ZONE);
+        exitPlugin();
+        awaitQuiescence(timeoutS);
+        sdk.setFillLatency(0, 0);
+        long requests = sdk.getRequests();
+
+        init = initPlugin(options, timeoutS);
+        passed &= check("warmStart: warmStart", init.get("warmStart"), true);
+        passed &= check("warmStart: held loaded event", awaitEvent("loaded", PluginHarness.INTERSTITIAL_ZONE, timeoutS) != null, true);
+        awaitQuiescence(timeoutS);
+        passed &= check("warmStart: requests", sdk.getRequests(), requests);
+        passed &= check("warmStart: interstitial isLoaded", call("isLoaded", PluginHarness.INTERSTITIAL_ZONE), true);
+        passed &= check("warmStart: rewarded isLoaded", call("isLoaded", PluginHarness.REWARDED_ZONE), true);
+        return passed;
+    }
+
+    // an init() with other zone options after onExiting() releases the ads and drops the events held for them
+    private boolean changedOptionsScenario(long timeoutS) throws Exception {
+        System.out.println("scenario: changedOptions");
+
+        // make room for a fill of the interstitial while there is no listener
+        call("show", PluginHarness.INTERSTITIAL_ZONE);
+        boolean passed = check("changedOptions: closed", awaitEvent("closed", PluginHarness.INTERSTITIAL_ZONE, timeoutS) != null, true);
+        sdk.setFillLatency(50, 50);
+        call("load", PluginHarness.INTERSTITIAL_ZONE);
+        exitPlugin();
+        awaitQuiescence(timeoutS);
+        sdk.setFillLatency(0, 0);
+
+        Map<String, Object> options = warmStartOptions();
+        zoneOptions(options, PluginHarness.REWARDED_ZONE).put("priority", 1);
+        Map<String, Object> init = initPlugin(options, timeoutS);
+        awaitQuiescence(timeoutS);
+
+        passed &= check("changedOptions: warmStart", init.get("warmStart"), false);
+        passed &= check("changedOptions: held loaded events", events("loaded", null).size(), 0);
+        passed &= check("changedOptions: interstitial isLoaded", call("isLoaded", PluginHarness.INTERSTITIAL_ZONE), false);
+        passed &= check("changedOptions: rewarded isLoaded", call("isLoaded", PluginHarness.REWARDED_ZONE), false);
+        return passed;
+    }
+
+    // showOrLoad() reports a timeout when the fill comes too late, and keeps the late ad without showing it
+    private boolean showOrLoadTimeoutScenario(long timeoutS) throws Exception {
+        Map<String, Object> options = PluginHarness.defaultOptions("table");
+        Map<String, Object> init = startScenario("showOrLoadTimeout", options, timeoutS);
+        boolean passed = check("showOrLoadTimeout: warmStart", init.get("warmStart"), false);
+
+        Map<String, Object> showOptions = new LinkedHashMap<>();
+        showOptions.put("timeoutMs", 20);
+        sdk.setFillLatency(100, 100);
+        call("showOrLoad", PluginHarness.INTERSTITIAL_ZONE, showOptions);
+        Map<String, Object> failed = awaitEvent("failed", PluginHarness.INTERSTITIAL_ZONE, timeoutS);
+        passed &= check("showOrLoadTimeout: failed", failed != null, true);
+        passed &= check("showOrLoadTimeout: response", (failed != null) ? failed.get("response") : null, "timeout");
+        passed &= check("showOrLoadTimeout: late fill", awaitEvent("loaded", PluginHarness.INTERSTITIAL_ZONE, timeoutS) != null, true);
+        awaitQuiescence(timeoutS);
+        sdk.setFillLatency(0, 0);
+
+        passed &= check("showOrLoadTimeout: displayed events", events("displayed", null).size(), 0);
+        passed &= check("showOrLoadTimeout: isLoaded", call("isLoaded", PluginHarness.INTERSTITIAL_ZONE), true);
+        return passed;
+    }
+
+    // show() for a zone without an ad shows the ad of its fallback zone
+    private boolean fallbackScenario(long timeoutS) throws Exception {
+        Map<String, Object> options = PluginHarness.defaultOptions("table");
+        zoneOptions(options, PluginHarness.INTERSTITIAL_ZONE).put("fallbacks", Arrays.asList(PluginHarness.REWARDED_ZONE));
+        zoneOptions(options, PluginHarness.REWARDED_ZONE).put("priority", 2);
+        Map<String, Object> init = startScenario("fallback", options, timeoutS);
+
+        boolean passed = check("fallback: warmStart", init.get("warmStart"), false);
+        call("load", PluginHarness.REWARDED_ZONE);
+        passed &= check("fallback: rewarded loaded", awaitEvent("loaded", PluginHarness.REWARDED_ZONE, timeoutS) != null, true);
+        call("show", PluginHarness.INTERSTITIAL_ZONE);
+        Map<String, Object> displayed = awaitEvent("displayed", PluginHarness.REWARDED_ZONE, timeoutS);
+        passed &= check("fallback: displayed", displayed != null, true);
+        passed &= check("fallback: requestedZoneName", (displayed != null) ? data(displayed).get("requestedZoneName") : null,
+                PluginHarness.INTERSTITIAL_ZONE);
+        passed &= check("fallback: closed", awaitEvent("closed", PluginHarness.REWARDED_ZONE, timeoutS) != null, true);
+        awaitQuiescence(timeoutS);
+
+        passed &= check("fallback: rewarded shows", stat(PluginHarness.REWARDED_ZONE, "shows"), 1);
+        passed &= check("fallback: interstitial shows", stat(PluginHarness.INTERSTITIAL_ZONE, "shows"), 0);
+        return passed;
+    }
+
+    // options no earlier scenario used, so the first init() with them is a cold start
+    private static Map<String, Object> warmStartOptions() {
+        Map<String, Object> options = PluginHarness.defaultOptions("table");
+        zoneOptions(options, PluginHarness.REWARDED_ZONE).put("priority", 3);
+        return options;
+    }
+
+    // ends the current session and inits the plugin with the scenario listener, returns the init event's data
+    private Map<String, Object> startScenario(String name, Map<String, Object> options, long timeoutS) throws Exception {
+        System.out.println("scenario: " + name);
+        exitPlugin();
+        return initPlugin(options, timeoutS);
+    }
+
+    // the Corona runtime's onExiting(), ads are kept while the SDK is ready
+    private void exitPlugin() throws Exception {
+        onLuaThread(new Callable<Object>() {
+            @Override
+            public Object call() {
+                harness.exit();
+                return null;
+            }
+        });
+    }
+
+    // inits the plugin with the scenario listener, returns the init event's data
+    private Map<String, Object> initPlugin(final Map<String, Object> options, long timeoutS) throws Exception {
+        onLuaThread(new Callable<Object>() {
+            @Override
+            public Object call() {
+                scenarioEvents.clear();
+                harness.init(options, scenarioListener);
+                return null;
+            }
+        });
+
+        Map<String, Object> init = awaitEvent("init", null, timeoutS);
+        return (init != null) ? data(init) : new LinkedHashMap<String, Object>();
+    }
+
+    // the Lua listener of the scenarios: records every event
+    private final JavaFunction scenarioListener = new JavaFunction() {
+        @Override
+        public int invoke(LuaState L) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> event = (Map<String, Object>) harness.toJava(-1);
+            scenarioEvents.add(event);
+            return 0;
+        }
+    };
+
+    // the first scenario event with the phase (and zone, unless null), or null if none arrives in time
+    private Map<String, Object> awaitEvent(String phase, String zoneName, long timeoutS) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutS);
+        do {
+            List<Map<String, Object>> matches = events(phase, zoneName);
+            if (!matches.isEmpty()) {
+                return matches.get(0);
+            }
+            Thread.sleep(1);
+        } while (System.nanoTime() < deadline);
+        return null;
+    }
+
+    // the scenario events received so far with the phase (and zone, unless null)
+    private List<Map<String, Object>> events(final String phase, final String zoneName) throws Exception {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> matches = (List<Map<String, Object>>) onLuaThread(new Callable<Object>() {
+            @Override
+            public Object call() {
+                List<Map<String, Object>> matches = new ArrayList<>();
+                for (Map<String, Object> event : scenarioEvents) {
+                    if (phase.equals(event.get("phase")) && ((zoneName == null) || zoneName.equals(data(event).get("zoneName")))) {
+                        matches.add(event);
+                    }
+                }
+                return matches;
+            }
+        });
+        return matches;
+    }
+
+    // sends a trim-memory callback on the UI thread, like the OS would, and waits for the events it causes
+    private void trimMemory(final int level, long timeoutS) throws Exception {
+        uiThread.submit(new Runnable() {
+            @Override
+            public void run() {
+                CoronaEnvironment.getApplicationContext().trimMemory(level);
+            }
+        }).get();
+        awaitQuiescence(timeoutS);
+    }
+
+    // calls a plugin function on the Lua thread
+    private Object call(final String name, final Object... args) throws Exception {
+        return onLuaThread(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return harness.call(name, args);
+            }
+        });
+    }
+
+    private long stat(String zoneName, String counter) throws Exception {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) call("getStats", zoneName);
+        return ((Number) stats.get(counter)).longValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> data(Map<String, Object> event) {
+        Object data = event.get("data");
+        return (data instanceof Map) ? (Map<String, Object>) data : new LinkedHashMap<String, Object>();
+    }
+
+    // the options table of a zone in adZones, replacing a plain zone id with a table
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> zoneOptions(Map<String, Object> options, String zoneName) {
+        Map<String, Object> adZones = (Map<String, Object>) options.get("adZones");
+        Object zone = adZones.get(zoneName);
+        if (zone instanceof Map) {
+            return (Map<String, Object>) zone;
+        }
+
+        Map<String, Object> table = new LinkedHashMap<>();
+        table.put("id", zone);
+        adZones.put(zoneName, table);
+        return table;
+    }
+
+    // -------------------------------------------------------------------
+    // helpers
+    // -------------------------------------------------------------------
+
+    private void load(ZoneDriver driver) {
+        for (int i = 0; i <= extraLoads; i++) {
+            harness.call("load", driver.zoneName);
+        }
+    }
+
+    // runs a plugin call on the Lua thread after the current event has been handled
+    private void later(Runnable call) {
+        luaThread.execute(call);
+    }
+
+    private Object onLuaThread(Callable<Object> call) throws Exception {
+        return luaThread.submit(call).get();
+    }
+
+    private void awaitQuiescence(long timeoutS) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutS);
+        Callable<Object> noop = new Callable<Object>() {
+            @Override
+            public Object call() {
+                return null;
+            }
+        };
+
+        // delayed plugin work (autoReload, prefetch) goes through a timer first, so idle must last a while
+        int idleRounds = 0;
+        long requests = -1;
+        while ((idleRounds < 3) && (System.nanoTime() < deadline)) {
+            uiThread.submit(noop).get();
+            luaThread.submit(noop).get();
+            boolean idle = sdk.isIdle() && (sdk.getRequests() == requests);
+            idleRounds = idle ? idleRounds + 1 : 0;
+            requests = sdk.getRequests();
+            Thread.sleep(idle ? 20 : 1);
+        }
+    }
+
+    private void shutdown() {
+        harness.exit();
+        SimulatedAdColonySdk.uninstall();
+        luaThread.shutdownNow();
+        uiThread.shutdownNow();
+    }
+
+    private long totalEvents() {
+        long total = 0;
+        for (Integer count : eventCounts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    private long events(String phase) {
+        Integer count = eventCounts.get(phase);
+        return (count != null) ? count : 0;
+    }
+
+    private static long sum(Map<String, Map<String, Object>> stats, String counter) {
+        long total = 0;
+        for (String zoneName : ZONES) {
+            total += ((Number) stats.get(zoneName).get(counter)).longValue();
+        }
+        return total;
+    }
+
+    private static boolean check(String name, long actual, long expected) {
+        if (actual == expected) {
+            return true;
+        }
+        System.out.println("MISMATCH " + name + ": got " + actual + ", expected " + expected);
+        return false;
+    }
+
+    private static boolean check(String name, Object actual, Object expected) {
+        if ((actual == null) ? (expected == null) : actual.equals(expected)) {
+            return true;
+        }
+        System.out.println("MISMATCH " + name + ": got " + actual + ", expected " + expected);
+        return false;
+    }
+
+    private long longArg(String key, long defaultValue) {
+        String value = args.get(key);
+        return (value != null) ? Long.parseLong(value) : defaultValue;
+    }
+
+    private double doubleArg(String key, double defaultValue) {
+        String value = args.get(key);
+        return (value != null) ? Double.parseDouble(value) : defaultValue;
+    }
+
+    private static ThreadFactory namedThreads(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
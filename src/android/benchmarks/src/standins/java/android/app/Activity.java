@@ -0,0 +1,27 @@
+package android.app;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Stand-in for the Android activity. runOnUiThread() hands work to the given executor,
+ * which plays the part of the UI thread. The default runs it inline.
+ */
+public class Activity extends android.content.Context {
+    private final Executor uiThread;
+
+    public Activity() {
+        this(null);
+    }
+
+    public Activity(Executor uiThread) {
+        this.uiThread = uiThread;
+    }
+
+    public void runOnUiThread(Runnable action) {
+        if (uiThread != null) {
+            uiThread.execute(action);
+        } else {
+            action.run();
+        }
+    }
+}
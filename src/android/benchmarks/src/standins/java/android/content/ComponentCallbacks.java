@@ -0,0 +1,10 @@
+package android.content;
+
+/**
+ * Stand-in for the Android component callbacks.
+ */
+public interface ComponentCallbacks {
+    void onConfigurationChanged(android.content.res.Configuration newConfig);
+
+    void onLowMemory();
+}
@@ -0,0 +1,41 @@
+package android.content;
+
+import java.io.File;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stand-in for the Android context. Registered component callbacks can be driven with {@link #trimMemory(int)}.
+ */
+public abstract class Context {
+    private static final File FILES_DIR = new File(System.getProperty("java.io.tmpdir"), "adcolony-standins");
+
+    private final CopyOnWriteArrayList<ComponentCallbacks> componentCallbacks = new CopyOnWriteArrayList<>();
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public File getFilesDir() {
+        if (!FILES_DIR.exists()) {
+            FILES_DIR.mkdirs();
+        }
+        return FILES_DIR;
+    }
+
+    public void registerComponentCallbacks(ComponentCallbacks callback) {
+        componentCallbacks.addIfAbsent(callback);
+    }
+
+    public void unregisterComponentCallbacks(ComponentCallbacks callback) {
+        componentCallbacks.remove(callback);
+    }
+
+    // stand-in only: sends a trim-memory callback, like the OS would (call on the UI thread)
+    public void trimMemory(int level) {
+        for (ComponentCallbacks callback : componentCallbacks) {
+            if (callback instanceof ComponentCallbacks2) {
+                ((ComponentCallbacks2) callback).onTrimMemory(level);
+            }
+        }
+    }
+}
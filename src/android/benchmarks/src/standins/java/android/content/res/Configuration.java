@@ -0,0 +1,7 @@
+package android.content.res;
+
+/**
+ * Stand-in for the Android configuration.
+ */
+public class Configuration {
+}
@@ -0,0 +1,8 @@
+package android.os;
+
+/**
+ * Stand-in for the Android build information.
+ */
+public class Build {
+    public static final String MANUFACTURER = "standin";
+}
@@ -0,0 +1,90 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for the Android handler. Delayed messages are timed on a shared daemon thread and then run on the looper.
+ */
+public class Handler {
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "standin-handler");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static final class Message {
+        final Runnable callback;
+        final ScheduledFuture<?> future;
+
+        Message(Runnable callback, ScheduledFuture<?> future) {
+            this.callback = callback;
+            this.future = future;
+        }
+    }
+
+    private final Looper looper;
+    private final List<Message> messages = new ArrayList<>();
+
+    public Handler() {
+        this(Looper.getMainLooper());
+    }
+
+    public Handler(Looper looper) {
+        this.looper = looper;
+    }
+
+    public boolean post(Runnable r) {
+        return postDelayed(r, 0);
+    }
+
+    public boolean postDelayed(final Runnable r, long delayMillis) {
+        final Message[] message = new Message[1];
+        synchronized (messages) {
+            ScheduledFuture<?> future = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (messages) {
+                        if (!messages.remove(message[0])) {
+                            return; // removed in the meantime
+                        }
+                    }
+                    looper.execute(r);
+                }
+            }, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+            message[0] = new Message(r, future);
+            messages.add(message[0]);
+        }
+        return true;
+    }
+
+    public void removeCallbacks(Runnable r) {
+        synchronized (messages) {
+            for (Iterator<Message> it = messages.iterator(); it.hasNext(); ) {
+                Message message = it.next();
+                if (message.callback == r) {
+                    message.future.cancel(false);
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public void removeCallbacksAndMessages(Object token) {
+        synchronized (messages) {
+            for (Message message : messages) {
+                message.future.cancel(false);
+            }
+            messages.clear();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package android.os;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Stand-in for the Android looper. The main looper runs messages on an executor set by the harness,
+ * inline by default.
+ */
+public final class Looper {
+    private static final Looper mainLooper = new Looper();
+
+    private volatile Executor executor = null;
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return mainLooper;
+    }
+
+    // stand-in only
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    void execute(Runnable r) {
+        Executor e = executor;
+        if (e != null) {
+            e.execute(r);
+        } else {
+            r.run();
+        }
+    }
+}
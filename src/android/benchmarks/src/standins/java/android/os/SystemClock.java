@@ -0,0 +1,19 @@
+package android.os;
+
+/**
+ * Stand-in for the Android system clock, based on System.nanoTime().
+ */
+public final class SystemClock {
+    private static final long START = System.nanoTime();
+
+    private SystemClock() {
+    }
+
+    public static long elapsedRealtime() {
+        return (System.nanoTime() - START) / 1000000L;
+    }
+
+    public static long uptimeMillis() {
+        return elapsedRealtime();
+    }
+}
@@ -0,0 +1,51 @@
+package android.util;
+
+/**
+ * Stand-in for the Android log. Silent unless the system property "standins.log" is true.
+ */
+public final class Log {
+    private static final boolean ENABLED = Boolean.getBoolean("standins.log");
+
+    private Log() {
+    }
+
+    public static int d(String tag, String msg) {
+        return print("D", tag, msg);
+    }
+
+    public static int i(String tag, String msg) {
+        return print("I", tag, msg);
+    }
+
+    public static int i(String tag, String msg, Throwable tr) {
+        return print("I", tag, msg + '\n' + getStackTraceString(tr));
+    }
+
+    public static int w(String tag, String msg) {
+        return print("W", tag, msg);
+    }
+
+    public static int e(String tag, String msg) {
+        return print("E", tag, msg);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return print("E", tag, msg + '\n' + getStackTraceString(tr));
+    }
+
+    public static String getStackTraceString(Throwable tr) {
+        if (tr == null) {
+            return "";
+        }
+        java.io.StringWriter writer = new java.io.StringWriter();
+        tr.printStackTrace(new java.io.PrintWriter(writer));
+        return writer.toString();
+    }
+
+    private static int print(String level, String tag, String msg) {
+        if (ENABLED) {
+            System.out.println(level + "/" + tag + ": " + msg);
+        }
+        return 0;
+    }
+}
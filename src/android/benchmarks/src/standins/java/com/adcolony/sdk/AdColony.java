@@ -0,0 +1,64 @@
+package com.adcolony.sdk;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stand-in for the AdColony SDK entry point. Requests never complete on their own; the harness
+ * drives the captured listener directly.
+ */
+public class AdColony {
+    private static final ConcurrentHashMap<String, AdColonyZone> zones = new ConcurrentHashMap<>();
+    private static volatile AdColonyRewardListener rewardListener = null;
+    private static volatile AdColonyInterstitialListener lastRequestListener = null;
+
+    public static String getSDKVersion() {
+        return "4.8.0";
+    }
+
+    public static boolean configure(android.app.Activity activity, AdColonyAppOptions options, String appId, String... zoneIds) {
+        for (String zoneId : zoneIds) {
+            getZone(zoneId);
+        }
+        return true;
+    }
+
+    public static boolean setAppOptions(AdColonyAppOptions options) {
+        return true;
+    }
+
+    public static boolean requestInterstitial(String zoneId, AdColonyInterstitialListener listener, AdColonyAdOptions options) {
+        lastRequestListener = listener;
+        return true;
+    }
+
+    public static AdColonyZone getZone(String zoneId) {
+        AdColonyZone zone = zones.get(zoneId);
+        if (zone == null) {
+            AdColonyZone created = new AdColonyZone(zoneId);
+            zone = zones.putIfAbsent(zoneId, created);
+            if (zone == null) {
+                zone = created;
+            }
+        }
+        return zone;
+    }
+
+    public static boolean setRewardListener(AdColonyRewardListener listener) {
+        rewardListener = listener;
+        return true;
+    }
+
+    public static AdColonyRewardListener getRewardListener() {
+        return rewardListener;
+    }
+
+    public static boolean removeRewardListener() {
+        rewardListener = null;
+        return true;
+    }
+
+    // stand-in only
+    public static AdColonyInterstitialListener lastRequestListener() {
+        return lastRequestListener;
+    }
+}
@@ -0,0 +1,14 @@
+package com.adcolony.sdk;
+
+/**
+ * Stand-in for the AdColony ad options.
+ */
+public class AdColonyAdOptions {
+    public AdColonyAdOptions enableConfirmationDialog(boolean enable) {
+        return this;
+    }
+
+    public AdColonyAdOptions enableResultsDialog(boolean enable) {
+        return this;
+    }
+}
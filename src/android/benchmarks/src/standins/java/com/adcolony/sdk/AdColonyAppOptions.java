@@ -0,0 +1,33 @@
+package com.adcolony.sdk;
+
+/**
+ * Stand-in for the AdColony app options.
+ */
+public class AdColonyAppOptions {
+    public static final String GDPR = "GDPR";
+    public static final String COPPA = "COPPA";
+    public static final String CCPA = "CCPA";
+    public static final int PORTRAIT = 0;
+    public static final int LANDSCAPE = 1;
+    public static final int SENSOR = 2;
+
+    public AdColonyAppOptions setOriginStore(String originStore) {
+        return this;
+    }
+
+    public AdColonyAppOptions setRequestedAdOrientation(int orientation) {
+        return this;
+    }
+
+    public AdColonyAppOptions setUserID(String userId) {
+        return this;
+    }
+
+    public AdColonyAppOptions setPrivacyFrameworkRequired(String framework, boolean required) {
+        return this;
+    }
+
+    public AdColonyAppOptions setPrivacyConsentString(String framework, String consent) {
+        return this;
+    }
+}
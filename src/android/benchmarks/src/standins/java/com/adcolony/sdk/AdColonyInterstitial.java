@@ -0,0 +1,45 @@
+package com.adcolony.sdk;
+
+/**
+ * Stand-in for an AdColony interstitial. show() only records that it was called.
+ */
+public class AdColonyInterstitial {
+    private final String zoneId;
+    private volatile boolean expired = false;
+    private volatile AdColonyInterstitialListener listener;
+
+    public AdColonyInterstitial(String zoneId, AdColonyInterstitialListener listener) {
+        this.zoneId = zoneId;
+        this.listener = listener;
+    }
+
+    public String getZoneID() {
+        return zoneId;
+    }
+
+    public boolean isExpired() {
+        return expired;
+    }
+
+    // stand-in only
+    public void setExpired(boolean expired) {
+        this.expired = expired;
+    }
+
+    public boolean show() {
+        return !expired;
+    }
+
+    public boolean destroy() {
+        listener = null;
+        return true;
+    }
+
+    public AdColonyInterstitialListener getListener() {
+        return listener;
+    }
+
+    public void setListener(AdColonyInterstitialListener listener) {
+        this.listener = listener;
+    }
+}
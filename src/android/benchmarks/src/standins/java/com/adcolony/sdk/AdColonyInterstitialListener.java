@@ -0,0 +1,29 @@
+package com.adcolony.sdk;
+
+/**
+ * Stand-in for the AdColony interstitial listener.
+ */
+public abstract class AdColonyInterstitialListener {
+    public abstract void onRequestFilled(AdColonyInterstitial ad);
+
+    public void onRequestNotFilled(AdColonyZone zone) {
+    }
+
+    public void onOpened(AdColonyInterstitial ad) {
+    }
+
+    public void onClosed(AdColonyInterstitial ad) {
+    }
+
+    public void onIAPEvent(AdColonyInterstitial ad, String productId, int engagementType) {
+    }
+
+    public void onClicked(AdColonyInterstitial ad) {
+    }
+
+    public void onExpiring(AdColonyInterstitial ad) {
+    }
+
+    public void onLeftApplication(AdColonyInterstitial ad) {
+    }
+}
@@ -0,0 +1,34 @@
+package com.adcolony.sdk;
+
+/**
+ * Stand-in for an AdColony reward.
+ */
+public class AdColonyReward {
+    private final String zoneId;
+    private final String rewardName;
+    private final int rewardAmount;
+    private final boolean success;
+
+    public AdColonyReward(String zoneId, String rewardName, int rewardAmount, boolean success) {
+        this.zoneId = zoneId;
+        this.rewardName = rewardName;
+        this.rewardAmount = rewardAmount;
+        this.success = success;
+    }
+
+    public boolean success() {
+        return success;
+    }
+
+    public String getRewardName() {
+        return rewardName;
+    }
+
+    public int getRewardAmount() {
+        return rewardAmount;
+    }
+
+    public String getZoneID() {
+        return zoneId;
+    }
+}
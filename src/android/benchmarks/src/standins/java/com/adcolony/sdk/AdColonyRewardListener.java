@@ -0,0 +1,8 @@
+package com.adcolony.sdk;
+
+/**
+ * Stand-in for the AdColony reward listener.
+ */
+public interface AdColonyRewardListener {
+    void onReward(AdColonyReward reward);
+}
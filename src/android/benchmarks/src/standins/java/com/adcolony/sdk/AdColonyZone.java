@@ -0,0 +1,60 @@
+package com.adcolony.sdk;
+
+/**
+ * Stand-in for AdColony zone metadata. Values can be changed through the stand-in setters.
+ */
+public class AdColonyZone {
+    private final String zoneId;
+    private volatile boolean valid = true;
+    private volatile boolean rewarded = false;
+    private volatile String rewardName = "";
+    private volatile int rewardAmount = 0;
+    private volatile int viewsPerReward = 0;
+    private volatile int remainingViewsUntilReward = 0;
+
+    public AdColonyZone(String zoneId) {
+        this.zoneId = zoneId;
+    }
+
+    public String getZoneID() {
+        return zoneId;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public boolean isRewarded() {
+        return rewarded;
+    }
+
+    public String getRewardName() {
+        return rewardName;
+    }
+
+    public int getRewardAmount() {
+        return rewardAmount;
+    }
+
+    public int getViewsPerReward() {
+        return viewsPerReward;
+    }
+
+    public int getRemainingViewsUntilReward() {
+        return remainingViewsUntilReward;
+    }
+
+    // stand-in only
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+
+    // stand-in only
+    public void setReward(String rewardName, int rewardAmount, int viewsPerReward, int remainingViewsUntilReward) {
+        this.rewarded = true;
+        this.rewardName = rewardName;
+        this.rewardAmount = rewardAmount;
+        this.viewsPerReward = viewsPerReward;
+        this.remainingViewsUntilReward = remainingViewsUntilReward;
+    }
+}
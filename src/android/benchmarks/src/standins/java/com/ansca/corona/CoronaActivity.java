@@ -0,0 +1,13 @@
+package com.ansca.corona;
+
+/**
+ * Stand-in for the Corona activity.
+ */
+public class CoronaActivity extends android.app.Activity {
+    public CoronaActivity() {
+    }
+
+    public CoronaActivity(java.util.concurrent.Executor uiThread) {
+        super(uiThread);
+    }
+}
@@ -0,0 +1,35 @@
+package com.ansca.corona;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stand-in for the Corona environment. The activity is set by the harness instead of by Corona.
+ */
+public final class CoronaEnvironment {
+    private static volatile CoronaActivity coronaActivity = null;
+    private static final CopyOnWriteArrayList<CoronaRuntimeListener> runtimeListeners = new CopyOnWriteArrayList<>();
+
+    private CoronaEnvironment() {
+    }
+
+    public static void addRuntimeListener(CoronaRuntimeListener listener) {
+        runtimeListeners.addIfAbsent(listener);
+    }
+
+    public static void removeRuntimeListener(CoronaRuntimeListener listener) {
+        runtimeListeners.remove(listener);
+    }
+
+    public static CoronaActivity getCoronaActivity() {
+        return coronaActivity;
+    }
+
+    public static android.content.Context getApplicationContext() {
+        return coronaActivity;
+    }
+
+    // stand-in only
+    public static void setCoronaActivity(CoronaActivity activity) {
+        coronaActivity = activity;
+    }
+}
@@ -0,0 +1,72 @@
+package com.ansca.corona;
+
+import com.naef.jnlua.JavaFunction;
+import com.naef.jnlua.LuaState;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for the Corona Lua helpers.
+ * <p/>
+ * References are kept in a Java map. dispatchEvent() calls the referenced function if it is a JavaFunction
+ * and otherwise just pops the event.
+ */
+public final class CoronaLua {
+    public static final int REFNIL = -1;
+    public static final int NOREF = -2;
+
+    private static final ConcurrentHashMap<Integer, Object> references = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextReference = new AtomicInteger(1);
+
+    private CoronaLua() {
+    }
+
+    public static int newRef(LuaState L, int index) {
+        int ref = nextReference.getAndIncrement();
+        JavaFunction function = L.toJavaFunction(index);
+        references.put(ref, (function != null) ? (Object) function : Boolean.TRUE);
+        return ref;
+    }
+
+    public static void deleteRef(LuaState L, int ref) {
+        references.remove(ref);
+    }
+
+    public static boolean isListener(LuaState L, int index, String eventName) {
+        return L.isJavaFunction(index) || L.isTable(index);
+    }
+
+    public static void newEvent(LuaState L, String eventName) {
+        L.newTable();
+        L.pushString(eventName);
+        L.setField(-2, CoronaLuaEvent.NAME_KEY);
+    }
+
+    public static void dispatchEvent(LuaState L, int listenerRef, int nresults) {
+        Object listener = references.get(listenerRef);
+        if (listener instanceof JavaFunction) {
+            int base = L.getTop() - 1;
+            ((JavaFunction) listener).invoke(L);
+            L.setTop(base);
+        } else {
+            L.pop(1);
+        }
+    }
+
+    public static void pushValue(LuaState L, Object value) {
+        if (value == null) {
+            L.pushNil();
+        } else if (value instanceof Boolean) {
+            L.pushBoolean((Boolean) value);
+        } else if (value instanceof Number) {
+            L.pushNumber(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            L.pushString((String) value);
+        } else if (value instanceof JavaFunction) {
+            L.pushJavaFunction((JavaFunction) value);
+        } else {
+            L.pushString(value.toString());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.ansca.corona;
+
+/**
+ * Stand-in for the Corona Lua event key names.
+ */
+public final class CoronaLuaEvent {
+    public static final String NAME_KEY = "name";
+    public static final String PROVIDER_KEY = "provider";
+    public static final String ISERROR_KEY = "isError";
+    public static final String RESPONSE_KEY = "response";
+    public static final String ERRORTYPE_KEY = "errorType";
+
+    private CoronaLuaEvent() {
+    }
+}
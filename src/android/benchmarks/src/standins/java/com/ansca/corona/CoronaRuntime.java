@@ -0,0 +1,39 @@
+package com.ansca.corona;
+
+import com.naef.jnlua.LuaState;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Stand-in for the Corona runtime: owns a single Lua state and the executor that plays the part of the Lua thread.
+ * The default runs tasks inline.
+ */
+public class CoronaRuntime {
+    private static final Executor INLINE = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final LuaState luaState;
+    private final Executor luaThread;
+
+    public CoronaRuntime(LuaState luaState) {
+        this(luaState, INLINE);
+    }
+
+    public CoronaRuntime(LuaState luaState, Executor luaThread) {
+        this.luaState = luaState;
+        this.luaThread = luaThread;
+    }
+
+    public LuaState getLuaState() {
+        return luaState;
+    }
+
+    // stand-in only
+    public Executor getLuaThread() {
+        return luaThread;
+    }
+}
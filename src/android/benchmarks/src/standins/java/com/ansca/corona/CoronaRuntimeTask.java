@@ -0,0 +1,8 @@
+package com.ansca.corona;
+
+/**
+ * Stand-in for a task executed on the Corona runtime's thread.
+ */
+public interface CoronaRuntimeTask {
+    void executeUsing(CoronaRuntime runtime);
+}
@@ -0,0 +1,29 @@
+package com.ansca.corona;
+
+/**
+ * Stand-in for the Corona runtime task dispatcher. Tasks run on the runtime's Lua thread executor.
+ */
+public class CoronaRuntimeTaskDispatcher {
+    private final CoronaRuntime runtime;
+
+    public CoronaRuntimeTaskDispatcher(CoronaRuntime runtime) {
+        this.runtime = runtime;
+    }
+
+    public boolean isRuntimeAvailable() {
+        return true;
+    }
+
+    public boolean isRuntimeUnavailable() {
+        return false;
+    }
+
+    public void send(final CoronaRuntimeTask task) {
+        runtime.getLuaThread().execute(new Runnable() {
+            @Override
+            public void run() {
+                task.executeUsing(runtime);
+            }
+        });
+    }
+}
@@ -0,0 +1,8 @@
+package com.naef.jnlua;
+
+/**
+ * Stand-in for the jnlua Java function interface.
+ */
+public interface JavaFunction {
+    int invoke(LuaState luaState);
+}
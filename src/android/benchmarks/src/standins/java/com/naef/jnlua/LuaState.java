@@ -0,0 +1,366 @@
+package com.naef.jnlua;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pure Java stand-in for the jnlua LuaState.
+ * <p/>
+ * Implements the subset of the stack API used by the plugin with Lua semantics: 1-based and negative
+ * stack indices, nil for missing values, numbers as doubles and tables that can be traversed with next().
+ * Tables are {@link Table} instances, functions are {@link JavaFunction} instances.
+ */
+public class LuaState {
+    /**
+     * A Lua table. Keys are Strings or Doubles, iteration follows insertion order.
+     */
+    public static final class Table {
+        final LinkedHashMap<Object, Object> entries;
+        private ArrayList<Object> keys; // snapshot of the keys for next(), rebuilt after modifications
+
+        public Table(int size) {
+            entries = new LinkedHashMap<>(Math.max(size, 4));
+        }
+
+        public Object get(Object key) {
+            return entries.get(normalizeKey(key));
+        }
+
+        public void put(Object key, Object value) {
+            key = normalizeKey(key);
+            if (value == null) {
+                if (entries.remove(key) != null) {
+                    keys = null;
+                }
+            } else if (entries.put(key, normalizeValue(value)) == null) {
+                keys = null;
+            }
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+        Object nextKey(Object key) {
+            if (keys == null) {
+                keys = new ArrayList<>(entries.keySet());
+            }
+            if (key == null) {
+                return keys.isEmpty() ? null : keys.get(0);
+            }
+            int i = keys.indexOf(normalizeKey(key));
+            return ((i >= 0) && (i + 1 < keys.size())) ? keys.get(i + 1) : null;
+        }
+    }
+
+    private Object[] stack = new Object[32];
+    private int top = 0;
+    private final HashMap<String, Object> globals = new HashMap<>();
+
+    // -------------------------------------------------------------------
+    // stack
+
+    public int getTop() {
+        return top;
+    }
+
+    public void setTop(int index) {
+        int newTop = (index >= 0) ? index : (top + index + 1);
+        for (int i = newTop; i < top; i++) {
+            stack[i] = null;
+        }
+        ensureCapacity(newTop);
+        top = newTop;
+    }
+
+    public void pop(int count) {
+        setTop(top - count);
+    }
+
+    public void pushNil() {
+        push(null);
+    }
+
+    public void pushBoolean(boolean b) {
+        push(b);
+    }
+
+    public void pushNumber(double n) {
+        push(n);
+    }
+
+    public void pushInteger(int n) {
+        push((double) n);
+    }
+
+    public void pushString(String s) {
+        push(s);
+    }
+
+    public void pushJavaFunction(JavaFunction function) {
+        push(function);
+    }
+
+    public void pushValue(int index) {
+        push(get(index));
+    }
+
+    // -------------------------------------------------------------------
+    // type checks and conversions
+
+    public LuaType type(int index) {
+        if (!isValidIndex(index)) {
+            return null;
+        }
+        return typeOf(get(index));
+    }
+
+    public String typeName(int index) {
+        LuaType type = type(index);
+        return (type != null) ? type.displayText() : "no value";
+    }
+
+    public boolean isNoneOrNil(int index) {
+        return get(index) == null;
+    }
+
+    public boolean isNil(int index) {
+        return isValidIndex(index) && (get(index) == null);
+    }
+
+    public boolean isBoolean(int index) {
+        return get(index) instanceof Boolean;
+    }
+
+    public boolean isNumber(int index) {
+        Object value = get(index);
+        return (value instanceof Double) || ((value instanceof String) && (parseNumber((String) value) != null));
+    }
+
+    public boolean isString(int index) {
+        Object value = get(index);
+        return (value instanceof String) || (value instanceof Double);
+    }
+
+    public boolean isTable(int index) {
+        return get(index) instanceof Table;
+    }
+
+    public boolean isJavaFunction(int index) {
+        return get(index) instanceof JavaFunction;
+    }
+
+    public boolean toBoolean(int index) {
+        Object value = get(index);
+        return (value != null) && !Boolean.FALSE.equals(value);
+    }
+
+    public double toNumber(int index) {
+        Object value = get(index);
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof String) {
+            Double number = parseNumber((String) value);
+            return (number != null) ? number : 0;
+        }
+        return 0;
+    }
+
+    public int toInteger(int index) {
+        return (int) toNumber(index);
+    }
+
+    public String toString(int index) {
+        Object value = get(index);
+        if (value instanceof String) {
+            return (String) value;
+        }
+        if (value instanceof Double) {
+            return numberToString((Double) value);
+        }
+        return null;
+    }
+
+    public JavaFunction toJavaFunction(int index) {
+        Object value = get(index);
+        return (value instanceof JavaFunction) ? (JavaFunction) value : null;
+    }
+
+    // -------------------------------------------------------------------
+    // tables
+
+    public void newTable() {
+        newTable(0, 0);
+    }
+
+    public void newTable(int arrayCount, int recordCount) {
+        push(new Table(arrayCount + recordCount));
+    }
+
+    public void getField(int index, String key) {
+        push(checkTable(index).get(key));
+    }
+
+    public void setField(int index, String key) {
+        Table table = checkTable(index);
+        table.put(key, get(-1));
+        pop(1);
+    }
+
+    public void rawGet(int index, int key) {
+        push(checkTable(index).get((double) key));
+    }
+
+    public void rawSet(int index, int key) {
+        Table table = checkTable(index);
+        table.put((double) key, get(-1));
+        pop(1);
+    }
+
+    public int length(int index) {
+        Object value = get(index);
+        if (value instanceof String) {
+            return ((String) value).length();
+        }
+        if (value instanceof Table) {
+            Table table = (Table) value;
+            int n = 0;
+            while (table.get((double) (n + 1)) != null) {
+                n++;
+            }
+            return n;
+        }
+        return 0;
+    }
+
+    public boolean next(int index) {
+        Table table = checkTable(index);
+        Object key = get(-1);
+        pop(1);
+
+        Object nextKey = table.nextKey(key);
+        if (nextKey == null) {
+            return false;
+        }
+
+        push(nextKey);
+        push(table.get(nextKey));
+        return true;
+    }
+
+    // -------------------------------------------------------------------
+    // globals
+
+    public void getGlobal(String name) {
+        push(globals.get(name));
+    }
+
+    public void setGlobal(String name) {
+        Object value = get(-1);
+        if (value != null) {
+            globals.put(name, value);
+        } else {
+            globals.remove(name);
+        }
+        pop(1);
+    }
+
+    // creates a global module table holding the functions and leaves it on the stack
+    public void register(String moduleName, NamedJavaFunction[] functions) {
+        Table module = new Table(functions.length);
+        for (NamedJavaFunction function : functions) {
+            module.put(function.getName(), function);
+        }
+        globals.put(moduleName, module);
+        push(module);
+    }
+
+    // -------------------------------------------------------------------
+    // helpers
+
+    private void push(Object value) {
+        ensureCapacity(top + 1);
+        stack[top++] = normalizeValue(value);
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > stack.length) {
+            Object[] newStack = new Object[Math.max(size, stack.length * 2)];
+            System.arraycopy(stack, 0, newStack, 0, top);
+            stack = newStack;
+        }
+    }
+
+    private int absIndex(int index) {
+        return (index > 0) ? index : (top + index + 1);
+    }
+
+    private boolean isValidIndex(int index) {
+        int abs = absIndex(index);
+        return (abs >= 1) && (abs <= top);
+    }
+
+    private Object get(int index) {
+        int abs = absIndex(index);
+        return ((abs >= 1) && (abs <= top)) ? stack[abs - 1] : null;
+    }
+
+    private Table checkTable(int index) {
+        Object value = get(index);
+        if (!(value instanceof Table)) {
+            throw new IllegalArgumentException("table expected at index " + index + ", got " + typeName(index));
+        }
+        return (Table) value;
+    }
+
+    private static LuaType typeOf(Object value) {
+        if (value == null) {
+            return LuaType.NIL;
+        } else if (value instanceof Boolean) {
+            return LuaType.BOOLEAN;
+        } else if (value instanceof Double) {
+            return LuaType.NUMBER;
+        } else if (value instanceof String) {
+            return LuaType.STRING;
+        } else if (value instanceof Table) {
+            return LuaType.TABLE;
+        } else if (value instanceof JavaFunction) {
+            return LuaType.FUNCTION;
+        }
+        return LuaType.USERDATA;
+    }
+
+    static Object normalizeKey(Object key) {
+        return (key instanceof Number) ? (Object) ((Number) key).doubleValue() : key;
+    }
+
+    static Object normalizeValue(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Table table = new Table(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                table.put(entry.getKey(), entry.getValue());
+            }
+            return table;
+        }
+        return value;
+    }
+
+    private static Double parseNumber(String s) {
+        try {
+            return Double.valueOf(s.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String numberToString(double n) {
+        return ((n == Math.rint(n)) && !Double.isInfinite(n)) ? Long.toString((long) n) : Double.toString(n);
+    }
+}
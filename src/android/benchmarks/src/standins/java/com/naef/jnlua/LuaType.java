@@ -0,0 +1,12 @@
+package com.naef.jnlua;
+
+/**
+ * Stand-in for the jnlua Lua value types.
+ */
+public enum LuaType {
+    NIL, BOOLEAN, LIGHTUSERDATA, NUMBER, STRING, TABLE, FUNCTION, USERDATA, THREAD;
+
+    public String displayText() {
+        return name().toLowerCase();
+    }
+}
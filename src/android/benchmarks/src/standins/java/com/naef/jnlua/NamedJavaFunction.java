@@ -0,0 +1,8 @@
+package com.naef.jnlua;
+
+/**
+ * Stand-in for the jnlua named Java function interface.
+ */
+public interface NamedJavaFunction extends JavaFunction {
+    String getName();
+}
@@ -0,0 +1,38 @@
+//
+// AdColonySdk.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony;
+
+import android.app.Activity;
+
+import com.adcolony.sdk.AdColonyAdOptions;
+import com.adcolony.sdk.AdColonyAppOptions;
+import com.adcolony.sdk.AdColonyInterstitialListener;
+import com.adcolony.sdk.AdColonyRewardListener;
+import com.adcolony.sdk.AdColonyZone;
+
+/**
+ * The AdColony SDK calls made by the plugin.
+ * <p/>
+ * {@link DefaultAdColonySdk} forwards to the static {@link com.adcolony.sdk.AdColony} methods. Other implementations
+ * (e.g. a simulator for load testing on a desktop JVM) are installed with LuaLoader.setSdk() before init() is called.
+ * Implementations must call listeners on the UI thread, like the SDK does.
+ */
+interface AdColonySdk {
+    boolean configure(Activity activity, AdColonyAppOptions appOptions, String appId, String... zoneIds);
+
+    boolean setAppOptions(AdColonyAppOptions appOptions);
+
+    boolean requestInterstitial(String zoneId, AdColonyInterstitialListener listener, AdColonyAdOptions adOptions);
+
+    AdColonyZone getZone(String zoneId);
+
+    boolean setRewardListener(AdColonyRewardListener listener);
+
+    boolean removeRewardListener();
+}
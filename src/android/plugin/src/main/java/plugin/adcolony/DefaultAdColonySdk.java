@@ -0,0 +1,53 @@
+//
+// DefaultAdColonySdk.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony;
+
+import android.app.Activity;
+
+import com.adcolony.sdk.AdColony;
+import com.adcolony.sdk.AdColonyAdOptions;
+import com.adcolony.sdk.AdColonyAppOptions;
+import com.adcolony.sdk.AdColonyInterstitialListener;
+import com.adcolony.sdk.AdColonyRewardListener;
+import com.adcolony.sdk.AdColonyZone;
+
+/**
+ * {@link AdColonySdk} backed by the real AdColony SDK.
+ */
+final class DefaultAdColonySdk implements AdColonySdk {
+    @Override
+    public boolean configure(Activity activity, AdColonyAppOptions appOptions, String appId, String... zoneIds) {
+        return AdColony.configure(activity, appOptions, appId, zoneIds);
+    }
+
+    @Override
+    public boolean setAppOptions(AdColonyAppOptions appOptions) {
+        return AdColony.setAppOptions(appOptions);
+    }
+
+    @Override
+    public boolean requestInterstitial(String zoneId, AdColonyInterstitialListener listener, AdColonyAdOptions adOptions) {
+        return AdColony.requestInterstitial(zoneId, listener, adOptions);
+    }
+
+    @Override
+    public AdColonyZone getZone(String zoneId) {
+        return AdColony.getZone(zoneId);
+    }
+
+    @Override
+    public boolean setRewardListener(AdColonyRewardListener listener) {
+        return AdColony.setRewardListener(listener);
+    }
+
+    @Override
+    public boolean removeRewardListener() {
+        return AdColony.removeRewardListener();
+    }
+}
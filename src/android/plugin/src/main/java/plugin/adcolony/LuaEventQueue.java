@@ -0,0 +1,223 @@
+//
+// LuaEventQueue.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Bounded queue of Lua events waiting to be delivered to the listener.
+ * <p/>
+ * Events are held, rather than delivered, while the Corona runtime is suspended or while there is no runtime or
+ * listener to deliver them to (between onExiting() and the next init()). Held events are coalesced: a newer
+ * availability event (loaded, failed, expired) for a zone replaces the ones queued for it since its last other
+ * event, and a newer info event replaces older ones. If the queue is still full, the oldest event that is not
+ * durable is dropped, so memory stays bounded however long the app stays in the background. Durable events are
+ * never dropped: when nothing else is left to drop, a new event that may be dropped is refused instead, and a new
+ * durable event grows the queue.
+ * <p/>
+ * All methods are thread safe. Callers send a drain task whenever {@link #offer} or one of the state setters
+ * returns true, and the task delivers what {@link #drain()} returns, in order.
+ */
+final class LuaEventQueue {
+    // how held events may be merged or dropped
+    static final int KIND_DEFAULT = 0;      // dropped when the queue overflows
+    static final int KIND_AVAILABILITY = 1; // replaced by the zone's next availability event
+    static final int KIND_INFO = 2;         // replaced by the zone's next info event
+    static final int KIND_DURABLE = 3;      // never merged or dropped, kept for the next session
+    static final int KIND_SESSION = 4;      // durable, but discarded with the session (when the queue is detached)
+
+    private static final Map<?, ?>[] NO_EVENTS = new Map<?, ?>[0];
+
+    private static final class Entry {
+        final Map<String, Object> event;
+        final String zoneName;
+        final int kind;
+
+        Entry(Map<String, Object> event, String zoneName, int kind) {
+            this.event = event;
+            this.zoneName = zoneName;
+            this.kind = kind;
+        }
+
+        boolean isFor(String zoneName) {
+            return zoneName.equals(this.zoneName);
+        }
+    }
+
+    private final int capacity;
+    private final ArrayList<Entry> events = new ArrayList<>();
+
+    // guarded by this
+    private boolean suspended = false;
+    private boolean attached = false;
+    private boolean drainScheduled = false;
+    private long coalesced = 0;
+    private long dropped = 0;
+
+    LuaEventQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues an event. zoneName may be null for events that are not about a zone.
+     *
+     * @return true if the caller must send a drain task
+     */
+    synchronized boolean offer(Map<String, Object> event, String zoneName, int kind) {
+        if (!isDeliverable()) {
+            if (zoneName != null) {
+                coalesce(zoneName, kind);
+            }
+            if ((events.size() >= capacity) && !dropOldest() && !isDurable(kind)) {
+                // every held event is durable, the new one gives way
+                dropped++;
+                return false;
+            }
+        }
+
+        events.add(new Entry(event, zoneName, kind));
+
+        return scheduleDrain(false);
+    }
+
+    /**
+     * Takes every event that can be delivered now, oldest first.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized Map<String, Object>[] drain() {
+        drainScheduled = false;
+        if (!isDeliverable() || events.isEmpty()) {
+            return (Map<String, Object>[]) NO_EVENTS;
+        }
+
+        Map<String, Object>[] batch = (Map<String, Object>[]) new Map<?, ?>[events.size()];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = events.get(i).event;
+        }
+        events.clear();
+        return batch;
+    }
+
+    /**
+     * Holds events while the runtime is suspended.
+     *
+     * @return true if the caller must send a drain task
+     */
+    synchronized boolean setSuspended(boolean suspended) {
+        this.suspended = suspended;
+
+        // a drain sent before the suspend may never have run, so always send a new one when resuming
+        return scheduleDrain(!suspended);
+    }
+
+    /**
+     * Attaches the queue to a runtime task dispatcher and listener, or detaches it (keeping only durable events).
+     *
+     * @return true if the caller must send a drain task
+     */
+    synchronized boolean setAttached(boolean attached) {
+        this.attached = attached;
+
+        if (!attached) {
+            // events about released ads mean nothing to the next session
+            clearNonDurable();
+            drainScheduled = false;
+        }
+
+        return scheduleDrain(attached);
+    }
+
+    // discards every queued event
+    synchronized void clear() {
+        events.clear();
+    }
+
+    // discards every queued event that is not kept for the next session
+    synchronized void clearNonDurable() {
+        for (int i = events.size() - 1; i >= 0; i--) {
+            if (events.get(i).kind != KIND_DURABLE) {
+                events.remove(i);
+            }
+        }
+    }
+
+    // true while events are held rather than delivered
+    synchronized boolean isHolding() {
+        return !isDeliverable();
+    }
+
+    synchronized int size() {
+        return events.size();
+    }
+
+    synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    private boolean isDeliverable() {
+        return attached && !suspended;
+    }
+
+    // returns true if a drain task has to be sent (force ignores a drain that is already scheduled)
+    private boolean scheduleDrain(boolean force) {
+        if (!isDeliverable() || events.isEmpty() || (drainScheduled && !force)) {
+            return false;
+        }
+
+        drainScheduled = true;
+        return true;
+    }
+
+    // remove held events the new one supersedes
+    private void coalesce(String zoneName, int kind) {
+        if (kind == KIND_INFO) {
+            for (int i = events.size() - 1; i >= 0; i--) {
+                Entry entry = events.get(i);
+                if ((entry.kind == KIND_INFO) && entry.isFor(zoneName)) {
+                    events.remove(i);
+                    coalesced++;
+                }
+            }
+        } else if (kind == KIND_AVAILABILITY) {
+            // only the availability events after the zone's last other event, so shows and closes keep their context
+            for (int i = events.size() - 1; i >= 0; i--) {
+                Entry entry = events.get(i);
+                if (!entry.isFor(zoneName) || (entry.kind == KIND_INFO)) {
+                    continue;
+                }
+                if (entry.kind != KIND_AVAILABILITY) {
+                    break;
+                }
+                events.remove(i);
+                coalesced++;
+            }
+        }
+    }
+
+    // make room for one event by dropping the oldest one that is not durable, returns false if all of them are
+    private boolean dropOldest() {
+        for (int i = 0; i < events.size(); i++) {
+            if (!isDurable(events.get(i).kind)) {
+                events.remove(i);
+                dropped++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDurable(int kind) {
+        return (kind == KIND_DURABLE) || (kind == KIND_SESSION);
+    }
+}
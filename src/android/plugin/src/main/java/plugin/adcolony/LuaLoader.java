@@ -22,11 +22,19 @@ import com.ansca.corona.CoronaLuaEvent;
 import com.ansca.corona.CoronaRuntimeTask;
 import com.ansca.corona.CoronaRuntimeTaskDispatcher;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.HashMap;
-import java.util.Hashtable;
 import java.util.Map;
+import java.util.Random;
 
-import android.util.Log;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
 import org.json.JSONObject;
 
@@ -61,11 +69,9 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
 
     // response keys
     private static final String RESPONSE_LOADFAILED = "loadFailed";
-
-    // Corona APP ID / SIG
-    private static final String APPID_KEY = "appId";
-    private static final String ZONETABLE_KEY = "zoneTable";
-    private static final String ZONESTATUS_KEY = "zoneStatus";
+    private static final String RESPONSE_HELDADLIMIT = "heldAdLimit";
+    private static final String RESPONSE_TIMEOUT = "timeout";
+    private static final String RESPONSE_SUPERSEDED = "superseded";
 
     // add missing keys
     private static final String EVENT_PHASE_KEY = "phase";
@@ -76,43 +82,90 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
     private static final String DATA_ZONE_NAME = "zoneName";
     private static final String DATA_CURRENCY_NAME = "currencyName";
     private static final String DATA_REWARD = "reward";
-
-    // message constants
-    private static final String CORONA_TAG = "Corona";
-    private static final String ERROR_MSG = "ERROR: ";
-    private static final String WARNING_MSG = "WARNING: ";
+    private static final String DATA_REWARD_ID = "rewardId";
+    private static final String DATA_REPLAYED = "replayed";
+    private static final String DATA_REASON = "reason";
+    private static final String DATA_REQUESTED_ZONE_NAME = "requestedZoneName";
+
+    // expired event reasons
+    private static final String REASON_EVICTED = "evicted";
+    private static final String REASON_MEMORY = "lowMemory";
+    private static final String REASON_MAX_AGE = "maxAdAge";
+    private static final String DATA_QUEUED_MS = "queuedMs";
+    private static final String DATA_CONFIGURE_MS = "configureMs";
+    private static final String DATA_TOTAL_MS = "totalMs";
+    private static final String DATA_WARM_START = "warmStart";
+
+    // event data formats
+    private static final String DATA_FORMAT_JSON = "json";
+    private static final String DATA_FORMAT_TABLE = "table";
+
+    // zone option keys
+    private static final String ZONE_ID_KEY = "id";
+    private static final String ZONE_POOLSIZE_KEY = "poolSize";
+    private static final String ZONE_PRIORITY_KEY = "priority";
+    private static final String ZONE_FALLBACKS_KEY = "fallbacks";
+
+    // entries kept for dumpLog()
+    private static final int LOG_CAPACITY = 256;
+
+    // events held while the runtime is suspended or gone
+    private static final int EVENT_QUEUE_CAPACITY = 64;
 
     // convenience variables
     private static int coronaListener = CoronaLua.REFNIL;
     private static CoronaRuntimeTaskDispatcher coronaRuntimeTaskDispatcher = null;
-    private static String functionSignature = ""; // used in error reporting functions
-
-    // ad object dictionary
-    private static final Map<String, Object> adcolonyObjects = new HashMap<>(); // keep track of loaded ad objects
-
-    // object dictionary keys
-    private static final String SDK_READY_KEY = "sdkReady";
+    private static final PluginLog pluginLog = new PluginLog(LOG_CAPACITY);
+    private static long requireTime = 0;          // elapsedRealtime() of the plugin's require(), for init timings
+    private static boolean autoReload = false;
+    private static boolean prefetch = false;
+    private static boolean rankFallbacks = false; // try fallback zones best refilled first instead of in declared order
+    private static int maxHeldAds = 0; // ads held by all zones together, 0 for no limit
+    private static Context memoryCallbacksContext = null; // where memoryCallbacks is registered
+    private static volatile long lastMemoryPressureTime = 0; // elapsedRealtime() of the last warning while running
+    private static boolean eventDataAsTable = false; // push event.data as a Lua table instead of a JSON string
+    private static final Handler reloadHandler = new Handler(Looper.getMainLooper());
+    private static final Random reloadJitter = new Random();
+
+    // Lua events waiting to be delivered, drained in order by a single runtime task per burst
+    private static final LuaEventQueue eventQueue = new LuaEventQueue(EVENT_QUEUE_CAPACITY);
+    private static long reportedDroppedEvents = 0;
+
+    // the AdColony SDK (replaced by a simulator when load testing)
+    private static volatile AdColonySdk sdk = new DefaultAdColonySdk();
+
+    // plugin configuration and per-zone state (keeps track of loaded ad objects)
+    private static final ZoneRegistry zoneRegistry = new ZoneRegistry();
+
+    // journal of rewards not acknowledged by the app yet (null unless the rewardLedger option is set)
+    private static volatile RewardLedger rewardLedger = null;
+    private static volatile boolean rewardsDeferred = false; // journal rewards only, the next init() replays them
+
+    // API calls made after init() but before AdColony.configure() has completed (also the lock for the SDK ready flag)
+    private static final List<Runnable> pendingCommands = new ArrayList<>();
 
     // ad types
     private static final String TYPE_INTERSTITIAL = "interstitial";
     private static final String TYPE_REWARDEDVIDEO = "rewardedVideo";
 
+    // auto reload backoff (no-fill retries are spread over BASE * 2^n, capped at MAX, with jitter)
+    private static final long AUTORELOAD_BASE_DELAY_MS = 2000;
+    private static final long AUTORELOAD_MAX_DELAY_MS = 5 * 60 * 1000;
+    private static final int AUTORELOAD_MAX_RETRIES = 8;
+
+    // prefetched ads should be filled this long before the next expected show
+    private static final long PREFETCH_LEAD_MS = 5000;
+
+    // how long showOrLoad() waits for an ad unless told otherwise
+    private static final long SHOW_OR_LOAD_TIMEOUT_MS = 5000;
+
+    // ads released on memory pressure are reloaded on resume once the app has run this long without a warning
+    private static final long MEMORY_PRESSURE_COOLDOWN_MS = 60 * 1000;
+
     // valid orientations
     private static final String PORTRAIT = "portrait";
     private static final String LANDSCAPE = "landscape";
 
-    private static class ZoneStatusInfo {
-        String zoneName;
-        boolean loaded;
-        Object adObject;
-
-        public ZoneStatusInfo(String zoneName) {
-            this.zoneName = zoneName;
-            this.loaded = false;
-            this.adObject = null;
-        }
-    }
-
     // -------------------------------------------------------------------
     // Plugin lifecycle events
     // -------------------------------------------------------------------
@@ -147,13 +200,21 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
      */
     @Override
     public int invoke(LuaState L) {
+        requireTime = SystemClock.elapsedRealtime();
+
         // Register this plugin into Lua with the following functions.
         NamedJavaFunction[] luaFunctions = new NamedJavaFunction[]{
                 new Init(),
                 new Show(),
                 new Load(),
                 new IsLoaded(),
-                new GetInfoForZone()
+                new GetInfoForZone(),
+                new GetStats(),
+                new GetReadyZones(),
+                new DumpLog(),
+                new AckReward(),
+                new ShowOrLoad(),
+                new GetZoneHandle()
         };
         String libName = L.toString(1);
         L.register(libName, luaFunctions);
@@ -182,8 +243,10 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
         if (coronaRuntimeTaskDispatcher == null) {
             coronaRuntimeTaskDispatcher = new CoronaRuntimeTaskDispatcher(runtime);
 
-            // set default values
-            adcolonyObjects.put(SDK_READY_KEY, false);
+            // set default values (zones retained by onExiting() stay until the next init() decides)
+            if (!zoneRegistry.isRetained()) {
+                zoneRegistry.setSDKReady(false);
+            }
         }
     }
 
@@ -211,6 +274,8 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
      */
     @Override
     public void onSuspended(CoronaRuntime runtime) {
+        // hold events until the runtime resumes
+        eventQueue.setSuspended(true);
     }
 
     /**
@@ -222,6 +287,27 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
      */
     @Override
     public void onResumed(CoronaRuntime runtime) {
+        long dropped = eventQueue.getDroppedCount();
+        if (dropped != reportedDroppedEvents) {
+            logMsg(PluginLog.WARNING, "onResumed", "events dropped while suspended", dropped - reportedDroppedEvents);
+            reportedDroppedEvents = dropped;
+        }
+
+        // deliver the events held while suspended
+        if (eventQueue.setSuspended(false)) {
+            sendEventDrain();
+        }
+
+        // reload ads released on memory pressure, unless the app was still short on memory recently
+        long sinceLastPressure = SystemClock.elapsedRealtime() - lastMemoryPressureTime;
+        if ((lastMemoryPressureTime == 0) || (sinceLastPressure >= MEMORY_PRESSURE_COOLDOWN_MS)) {
+            reloadHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    reloadReleasedAds();
+                }
+            });
+        }
     }
 
     /**
@@ -239,98 +325,728 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
      */
     @Override
     public void onExiting(CoronaRuntime runtime) {
-        if (adcolonyObjects.get(SDK_READY_KEY) != null) {
-            if ((boolean) adcolonyObjects.get(SDK_READY_KEY)) {
-                // release listeners
-                AdColony.removeRewardListener();
-                Hashtable<String, String> zoneTable = (Hashtable) adcolonyObjects.get(ZONETABLE_KEY);
-                for (String zoneName : zoneTable.keySet()) {
-                    String zoneId = zoneTable.get(zoneName);
-                    ZoneStatusInfo zoneStatus = (ZoneStatusInfo) ((HashMap) adcolonyObjects.get(ZONESTATUS_KEY)).get(zoneId);
-                    AdColonyInterstitial interstitial = (AdColonyInterstitial) zoneStatus.adObject;
-                    if (interstitial != null) {
-                        interstitial.setListener(null);
-                    }
-                }
+        // a configured SDK and its ads outlive the activity, keep them for the next init()
+        boolean retainAds = zoneRegistry.isSDKReady();
+
+        // the reward listener stays registered while ads are retained: an ad shown by this activity may still grant one
+        if (!retainAds) {
+            // the ads of an earlier activity were kept, but this one never configured the SDK
+            if (zoneRegistry.isRetained()) {
+                sdk.removeRewardListener();
+            }
+
+            // stop listening to memory warnings (kept while retained ads may still be released)
+            if (memoryCallbacksContext != null) {
+                memoryCallbacksContext.unregisterComponentCallbacks(memoryCallbacks);
+                memoryCallbacksContext = null;
             }
+            lastMemoryPressureTime = 0;
         }
 
+        // cancel pending auto reloads
+        reloadHandler.removeCallbacksAndMessages(null);
+        autoReload = false;
+        prefetch = false;
+        rankFallbacks = false;
+        maxHeldAds = 0;
+        eventDataAsTable = false;
+
         // release references
         CoronaLua.deleteRef(runtime.getLuaState(), coronaListener);
         coronaListener = CoronaLua.REFNIL;
         coronaRuntimeTaskDispatcher = null;
 
-        // release all objects
-        adcolonyObjects.clear();
+        // hold on to rewards until the next init(), discard the rest
+        eventQueue.setAttached(false);
+        eventQueue.setSuspended(false);
+
+        // journaled rewards are replayed by the next init() instead, the ledger stays open for rewards granted until then
+        RewardLedger ledger = rewardLedger;
+        if (ledger != null) {
+            eventQueue.clear();
+            if (retainAds) {
+                rewardsDeferred = true;
+            } else {
+                rewardsDeferred = false;
+                rewardLedger = null;
+                ledger.close();
+            }
+        }
+
+        // keep the zones and their ads, or release all objects (also detaches the listeners of loaded ads)
+        synchronized (pendingCommands) {
+            pendingCommands.clear();
+            if (retainAds) {
+                // an ad filled after this must not be shown by a showOrLoad() of the old activity,
+                // and maxAdAge checks are scheduled again by the next init()
+                for (ZoneStatusInfo zone : zoneRegistry.getZoneList()) {
+                    zone.cancelShowOnFill(0);
+                    zone.clearAgeCheck();
+                }
+                zoneRegistry.retain();
+            } else {
+                zoneRegistry.clear();
+            }
+        }
     }
 
     // -------------------------------------------------------------------
     // helper functions
     // -------------------------------------------------------------------
 
-    // log message to console
-    private void logMsg(String msgType, String errorMsg) {
-        String functionID = functionSignature;
-        if (!functionID.isEmpty()) {
-            functionID += ", ";
+    // look up a configured zone by name, logging an error if it doesn't exist
+    private ZoneStatusInfo getZoneOrLogError(String source, String zoneName) {
+        ZoneStatusInfo zoneStatus = zoneRegistry.getByName(zoneName);
+        if (zoneStatus == null) {
+            logMsg(PluginLog.ERROR, source, "zoneName '" + zoneName + "' doesn't exist");
+        }
+        return zoneStatus;
+    }
+
+    // look up the zone at a Lua stack index, given by name or by handle (see getZoneHandle()), logging an error if there is none
+    private ZoneStatusInfo getZoneOrLogError(String source, LuaState luaState, int index) {
+        LuaType type = luaState.type(index);
+        if (type == LuaType.NUMBER) {
+            // index the zone list directly, no string or hashing (a fractional number is no handle)
+            double number = luaState.toNumber(index);
+            int handle = (int) number;
+            ZoneStatusInfo zoneStatus = (handle == number) ? zoneRegistry.getByHandle(handle) : null;
+            if (zoneStatus == null) {
+                logMsg(PluginLog.ERROR, source, "zone handle doesn't exist", number);
+            }
+            return zoneStatus;
+        } else if (type == LuaType.STRING) {
+            return getZoneOrLogError(source, luaState.toString(index));
         }
 
-        Log.i(CORONA_TAG, msgType + functionID + errorMsg);
+        logMsg(PluginLog.ERROR, source, "zoneName (string) or zone handle (number) expected, got " + luaState.typeName(index));
+        return null;
+    }
+
+    // replace the AdColony SDK used by the plugin (null restores the real one); call before init()
+    static void setSdk(AdColonySdk adColonySdk) {
+        sdk = (adColonySdk != null) ? adColonySdk : new DefaultAdColonySdk();
+    }
+
+    // log message to the ring buffer, and to the console if logLevel allows
+    private void logMsg(int level, String source, String msg) {
+        pluginLog.log(level, source, msg);
+    }
+
+    // log message with a detail (zone name, exception, ...) that is only converted to text when needed
+    private void logMsg(int level, String source, String msg, Object detail) {
+        pluginLog.log(level, source, msg, detail);
     }
 
-    // return true if SDK is properly initialized
-    private boolean isSDKInitialized() {
+    // return true if init() has been called
+    private boolean isInitCalled(String source) {
         if (coronaListener == CoronaLua.REFNIL) {
-            logMsg(ERROR_MSG, "adcolony.init() must be called before calling other API functions");
+            logMsg(PluginLog.ERROR, source, "adcolony.init() must be called before calling other API functions");
             return false;
         }
 
-        if (!(boolean) adcolonyObjects.get(SDK_READY_KEY)) {
-            logMsg(ERROR_MSG, "Please wait for the 'init' event before calling other API functions");
-            return false;
+        return true;
+    }
+
+    // hold back a command until AdColony.configure() has completed, then run it on the UI thread
+    // returns false if the SDK is already ready and the caller should run the command itself
+    private boolean deferUntilReady(Runnable command) {
+        synchronized (pendingCommands) {
+            if (zoneRegistry.isSDKReady()) {
+                return false;
+            }
+
+            pendingCommands.add(command);
+            return true;
+        }
+    }
+
+    // flag the SDK as ready and run the commands queued until now, in order (must be called on the UI thread)
+    private void runPendingCommands() {
+        Runnable[] commands;
+        synchronized (pendingCommands) {
+            zoneRegistry.setSDKReady(true);
+            commands = pendingCommands.toArray(new Runnable[0]);
+            pendingCommands.clear();
+        }
+
+        for (Runnable command : commands) {
+            command.run();
+        }
+    }
+
+    // show a loaded ad for the zone show() was called for (must be called on the UI thread)
+    private void showInterstitial(ZoneStatusInfo requestedZone, AdColonyInterstitial interstitial) {
+        // the ad may come from one of the requested zone's fallbacks
+        CoronaAdColonyInterstitialListener listener = (CoronaAdColonyInterstitialListener) interstitial.getListener();
+        ZoneStatusInfo zoneStatus = listener.zoneStatus;
+
+        // send coronaOnOpened (see onOpened listener for details)
+        listener.coronaOnOpened(interstitial, requestedZone);
+
+        zoneStatus.stats.increment(ZoneStats.SHOWS);
+        listener.showTime = SystemClock.elapsedRealtime();
+        zoneStatus.recordShow(listener.showTime);
+        logMsg(PluginLog.DEBUG, "show", "showing ad", zoneStatus.zoneName);
+        if (!interstitial.show()) {
+            // expired before it could be shown, no close will follow
+            zoneStatus.showFinished();
+            logMsg(PluginLog.WARNING, "show", "ad expired before it could be shown", zoneStatus.zoneName);
+        }
+
+        // keep multi-slot pools topped up in the background
+        if ((zoneStatus.poolSize > 1) && zoneStatus.needsRefill() && hasRoomForAd()) {
+            requestInterstitial(zoneStatus);
+        }
+    }
+
+    // take the ad show() uses for a zone: its own, else one from the first of its fallbacks that has one
+    private AdColonyInterstitial takeAdForShow(ZoneStatusInfo zoneStatus) {
+        AdColonyInterstitial interstitial = zoneStatus.takeAd();
+        releaseOverdueAds(zoneStatus);
+        ZoneStatusInfo[] fallbacks = zoneStatus.fallbacks;
+        if ((interstitial != null) || (fallbacks.length == 0)) {
+            return interstitial;
+        }
+
+        if (rankFallbacks && (fallbacks.length > 1)) {
+            fallbacks = ZoneRegistry.rankByFillPerformance(fallbacks);
+        }
+        for (ZoneStatusInfo fallback : fallbacks) {
+            interstitial = fallback.takeAd();
+            releaseOverdueAds(fallback);
+            if (interstitial != null) {
+                logMsg(PluginLog.DEBUG, "show", "using an ad of fallback zone", fallback.zoneName);
+                break;
+            }
+        }
+        return interstitial;
+    }
+
+    // false once maxHeldAds ads are held (multi-slot pools stop refilling there)
+    private boolean hasRoomForAd() {
+        return (maxHeldAds <= 0) || (zoneRegistry.countHeldAds() < maxHeldAds);
+    }
+
+    // false once held ads and pending requests together reach maxHeldAds
+    private boolean hasRoomForRequest() {
+        return (maxHeldAds <= 0) || ((zoneRegistry.countHeldAds() + zoneRegistry.countPendingRequests()) < maxHeldAds);
+    }
+
+    // evict less important ads until a new ad for the zone fits within maxHeldAds (must be called on the UI thread)
+    // returns false if the new ad is the least important one and should not be kept
+    private boolean makeRoomForAd(ZoneStatusInfo zoneStatus) {
+        // a full pool replaces its own oldest ad
+        if ((maxHeldAds <= 0) || (zoneStatus.getHeldAds() >= zoneStatus.poolSize)) {
+            return true;
         }
 
+        while (zoneRegistry.countHeldAds() >= maxHeldAds) {
+            ZoneStatusInfo victim = zoneRegistry.findEvictionCandidate();
+            if ((victim == null) || (ZoneRegistry.compareImportance(victim, zoneStatus) > 0)) {
+                return false;
+            }
+
+            AdColonyInterstitial ad = victim.evictAd();
+            if (ad != null) {
+                ad.setListener(null);
+                ad.destroy();
+                victim.stats.increment(ZoneStats.EVICTIONS);
+                logMsg(PluginLog.DEBUG, "maxHeldAds", "ad evicted", victim.zoneName);
+                sendExpiredEvent(victim, REASON_EVICTED);
+            }
+        }
         return true;
     }
 
-    // dispatch a Lua event to our callback (dynamic handling of properties through map)
+    // drop held ads according to how short the system is on memory, least important zones first (must be called on the UI thread)
+    // level 1 trims multi-slot pools to one ad, level 2 also empties all but the highest priority zones, level 3 drops everything
+    private void releaseAdsForMemory(int level) {
+        int keepPriority = Integer.MIN_VALUE;
+        for (ZoneStatusInfo zone : zoneRegistry.getZoneList()) {
+            keepPriority = Math.max(keepPriority, zone.priority);
+        }
+
+        for (ZoneStatusInfo zone : zoneRegistry.getZoneList()) {
+            int keep = 1;
+            if ((level >= 3) || ((level == 2) && (zone.priority < keepPriority))) {
+                keep = 0;
+            }
+
+            AdColonyInterstitial ad;
+            while ((zone.getHeldAds() > keep) && ((ad = zone.evictAd()) != null)) {
+                ad.setListener(null);
+                ad.destroy();
+                zone.stats.increment(ZoneStats.MEMORY_RELEASES);
+                zone.markReleasedForMemory();
+                logMsg(PluginLog.DEBUG, "onTrimMemory", "ad released", zone.zoneName);
+                sendExpiredEvent(zone, REASON_MEMORY);
+            }
+        }
+    }
+
+    // request the ads released on memory pressure again (must be called on the UI thread)
+    private void reloadReleasedAds() {
+        if (!zoneRegistry.isSDKReady()) {
+            return;
+        }
+
+        for (ZoneStatusInfo zone : zoneRegistry.getZoneList()) {
+            if (zone.takeReleasedForMemory() && zone.needsRefill() && hasRoomForAd()) {
+                logMsg(PluginLog.DEBUG, "onResumed", "reloading ad released on memory pressure", zone.zoneName);
+                requestInterstitial(zone);
+            }
+        }
+    }
+
+    // memory warnings from the system (called on the UI thread)
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            int releaseLevel;
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+                releaseLevel = 3;
+            } else if ((level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) || (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)) {
+                releaseLevel = 2;
+            } else if ((level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) || (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)) {
+                releaseLevel = 1;
+            } else {
+                // RUNNING_MODERATE and UI_HIDDEN don't call for releasing anything
+                return;
+            }
+
+            // warnings while running in the foreground delay reloading
+            if (level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                lastMemoryPressureTime = SystemClock.elapsedRealtime();
+            }
+
+            logMsg(PluginLog.INFO, "onTrimMemory", "releasing ads, trim level", level);
+            releaseAdsForMemory(releaseLevel);
+        }
+
+        @Override
+        public void onLowMemory() {
+            lastMemoryPressureTime = SystemClock.elapsedRealtime();
+            logMsg(PluginLog.INFO, "onLowMemory", "releasing all ads");
+            releaseAdsForMemory(3);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+
+    // send an 'expired' event for the zone (reason is null when AdColony expired the ad)
+    private void sendExpiredEvent(ZoneStatusInfo zoneStatus, String reason) {
+        // create data
+        Map<String, Object> data = new HashMap<>();
+        data.put(DATA_ZONE_NAME, zoneStatus.zoneName);
+        if (reason != null) {
+            data.put(DATA_REASON, reason);
+        }
+
+        // send Corona Lua event
+        Map<String, Object> coronaEvent = new HashMap<>();
+        coronaEvent.put(EVENT_PHASE_KEY, PHASE_EXPIRED);
+        coronaEvent.put(EVENT_TYPE_KEY, zoneStatus.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
+        coronaEvent.put(EVENT_DATA_KEY, data);
+        dispatchLuaEvent(coronaEvent);
+    }
+
+    // push a zone's counters and latencies as a Lua table
+    private void pushZoneStats(LuaState L, ZoneStats stats) {
+        L.newTable(0, ZoneStats.COUNTER_NAMES.length + 4);
+
+        for (int i = 0; i < ZoneStats.COUNTER_NAMES.length; i++) {
+            L.pushNumber(stats.get(i));
+            L.setField(-2, ZoneStats.COUNTER_NAMES[i]);
+        }
+
+        L.pushNumber(stats.getFillRate());
+        L.setField(-2, "fillRate");
+
+        pushLatencyStats(L, stats.requestToFilled);
+        L.setField(-2, "requestToFilled");
+        pushLatencyStats(L, stats.showToDisplayed);
+        L.setField(-2, "showToDisplayed");
+        pushLatencyStats(L, stats.displayedToClosed);
+        L.setField(-2, "displayedToClosed");
+    }
+
+    // push a latency histogram summary (milliseconds) as a Lua table
+    private void pushLatencyStats(LuaState L, ZoneStats.LatencyHistogram histogram) {
+        L.newTable(0, 6);
+        L.pushNumber(histogram.getCount());
+        L.setField(-2, "count");
+        L.pushNumber(histogram.getMean());
+        L.setField(-2, "meanMs");
+        L.pushNumber(histogram.getMax());
+        L.setField(-2, "maxMs");
+        L.pushNumber(histogram.getPercentile(0.5));
+        L.setField(-2, "p50Ms");
+        L.pushNumber(histogram.getPercentile(0.9));
+        L.setField(-2, "p90Ms");
+        L.pushNumber(histogram.getPercentile(0.99));
+        L.setField(-2, "p99Ms");
+    }
+
+    // send the zone's settings as an 'info' event
+    private void sendZoneInfo(ZoneStatusInfo zoneStatus) {
+        // use cached zone settings, only asking the SDK until it has returned them once
+        ZoneStatusInfo.Metadata zoneInfo = zoneStatus.getMetadata();
+        if (!zoneInfo.valid) {
+            zoneStatus.updateMetadata(sdk.getZone(zoneStatus.zoneId));
+            zoneInfo = zoneStatus.getMetadata();
+        }
+
+        // create data
+        Map<String, Object> data = new HashMap<>();
+        data.put("zoneName", zoneStatus.zoneName);
+        data.put("isRewardedZone", zoneInfo.rewarded);
+        data.put("virtualCurrencyName", zoneInfo.rewardName);
+        data.put("rewardAmount", zoneInfo.rewardAmount);
+        data.put("viewsPerReward", zoneInfo.viewsPerReward);
+        data.put("viewsUntilReward", zoneInfo.viewsUntilReward);
+
+        // send Corona Lua event
+        Map<String, Object> coronaEvent = new HashMap<>();
+        coronaEvent.put(EVENT_PHASE_KEY, PHASE_INFO);
+        coronaEvent.put(EVENT_TYPE_KEY, zoneInfo.rewarded ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
+        coronaEvent.put(EVENT_DATA_KEY, data);
+        dispatchLuaEvent(coronaEvent);
+    }
+
+    // send a 'reward' event for every journaled reward the app has not acknowledged
+    private void replayRewards(RewardLedger ledger) {
+        for (RewardLedger.Reward reward : ledger.getPending()) {
+            // create data
+            Map<String, Object> data = new HashMap<>();
+            data.put(DATA_ZONE_NAME, reward.zoneName);
+            data.put(DATA_CURRENCY_NAME, reward.currencyName);
+            data.put(DATA_REWARD, reward.amount);
+            data.put(DATA_REWARD_ID, reward.id);
+            data.put(DATA_REPLAYED, true);
+
+            // send Corona Lua event
+            Map<String, Object> coronaEvent = new HashMap<>();
+            coronaEvent.put(EVENT_PHASE_KEY, PHASE_REWARD);
+            coronaEvent.put(EVENT_TYPE_KEY, TYPE_REWARDEDVIDEO);
+            coronaEvent.put(EVENT_DATA_KEY, data);
+            dispatchLuaEvent(coronaEvent);
+        }
+    }
+
+    // queue a Lua event for our callback (dynamic handling of properties through map)
+    // events queued before the runtime gets to them are delivered together, in order, by one runtime task
     private void dispatchLuaEvent(final Map<String, Object> event) {
-        if (coronaRuntimeTaskDispatcher != null) {
-            coronaRuntimeTaskDispatcher.send(new CoronaRuntimeTask() {
-                @Override
-                public void executeUsing(CoronaRuntime runtime) {
-                    try {
-                        LuaState L = runtime.getLuaState();
-                        CoronaLua.newEvent(L, EVENT_NAME);
-                        boolean hasErrorKey = false;
-
-                        // add event parameters from map
-                        for (String key : event.keySet()) {
-                            CoronaLua.pushValue(L, event.get(key));           // push value
-                            L.setField(-2, key);                              // push key
-
-                            if (!hasErrorKey) {
-                                hasErrorKey = key.equals(CoronaLuaEvent.ISERROR_KEY);
-                            }
-                        }
+        // encode data here unless it's going to be pushed as a table (held events are encoded when delivered,
+        // as most of them are merged away)
+        Object data = event.get(EVENT_DATA_KEY);
+        String zoneName = null;
+        if (data instanceof Map) {
+            zoneName = (String) ((Map) data).get(DATA_ZONE_NAME);
+            if (!eventDataAsTable && !eventQueue.isHolding()) {
+                event.put(EVENT_DATA_KEY, new JSONObject((Map) data).toString());
+            }
+        }
 
-                        // add error key if not in map
-                        if (!hasErrorKey) {
-                            L.pushBoolean(false);
-                            L.setField(-2, CoronaLuaEvent.ISERROR_KEY);
-                        }
+        if (eventQueue.offer(event, zoneName, eventKind((String) event.get(EVENT_PHASE_KEY)))) {
+            sendEventDrain();
+        }
+    }
+
+    // how an event may be merged with others or dropped while it is held
+    private static int eventKind(String phase) {
+        if (phase.equals(PHASE_LOADED) || phase.equals(PHASE_FAILED) || phase.equals(PHASE_EXPIRED)) {
+            return LuaEventQueue.KIND_AVAILABILITY;
+        } else if (phase.equals(PHASE_INFO)) {
+            return LuaEventQueue.KIND_INFO;
+        } else if (phase.equals(PHASE_REWARD)) {
+            return LuaEventQueue.KIND_DURABLE;
+        } else if (phase.equals(PHASE_INIT)) {
+            // apps wait for it before doing anything, but it belongs to the listener it was sent to
+            return LuaEventQueue.KIND_SESSION;
+        }
+        return LuaEventQueue.KIND_DEFAULT;
+    }
 
-                        // add provider
-                        L.pushString(PROVIDER_NAME);
-                        L.setField(-2, CoronaLuaEvent.PROVIDER_KEY);
+    // schedule a runtime task to deliver the queued events
+    private void sendEventDrain() {
+        CoronaRuntimeTaskDispatcher dispatcher = coronaRuntimeTaskDispatcher;
+        if (dispatcher != null) {
+            dispatcher.send(eventDrainTask);
+        }
+    }
 
-                        CoronaLua.dispatchEvent(L, coronaListener, 0);
-                    } catch (Exception ex) {
-                        ex.printStackTrace();
-                    }
+    // delivers every queued event to the Lua listener
+    private final CoronaRuntimeTask eventDrainTask = new CoronaRuntimeTask() {
+        @Override
+        public void executeUsing(CoronaRuntime runtime) {
+            LuaState L = runtime.getLuaState();
+            for (Map<String, Object> event : eventQueue.drain()) {
+                // held events have not been encoded yet, or were queued for the previous session's eventDataFormat
+                Object data = event.get(EVENT_DATA_KEY);
+                if ((data instanceof Map) && !eventDataAsTable) {
+                    event.put(EVENT_DATA_KEY, new JSONObject((Map) data).toString());
                 }
-            });
+
+                try {
+                    pushAndDispatchEvent(L, event);
+                } catch (Exception ex) {
+                    logMsg(PluginLog.ERROR, "dispatchEvent", "Lua listener failed", ex);
+                }
+            }
+        }
+    };
+
+    // build the event table and send it to our callback (must be called on the Lua thread)
+    private void pushAndDispatchEvent(LuaState L, Map<String, Object> event) {
+        CoronaLua.newEvent(L, EVENT_NAME);
+        boolean hasErrorKey = false;
+
+        // add event parameters from map
+        for (String key : event.keySet()) {
+            pushLuaValue(L, event.get(key));                  // push value
+            L.setField(-2, key);                              // push key
+
+            if (!hasErrorKey) {
+                hasErrorKey = key.equals(CoronaLuaEvent.ISERROR_KEY);
+            }
+        }
+
+        // add error key if not in map
+        if (!hasErrorKey) {
+            L.pushBoolean(false);
+            L.setField(-2, CoronaLuaEvent.ISERROR_KEY);
+        }
+
+        // add provider
+        L.pushString(PROVIDER_NAME);
+        L.setField(-2, CoronaLuaEvent.PROVIDER_KEY);
+
+        CoronaLua.dispatchEvent(L, coronaListener, 0);
+    }
+
+    // push a value onto the Lua stack, converting maps into (nested) tables
+    private void pushLuaValue(LuaState L, Object value) {
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            L.newTable(0, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                pushLuaValue(L, entry.getValue());
+                L.setField(-2, entry.getKey().toString());
+            }
+        } else {
+            CoronaLua.pushValue(L, value);
+        }
+    }
+
+    // load() for one zone: answer from a held ad or a request in flight before sending a new one (must be called on the UI thread)
+    private void loadZone(ZoneStatusInfo zoneStatus) {
+        if (zoneStatus.getState().isReady(SystemClock.elapsedRealtime())) {
+            zoneStatus.stats.increment(ZoneStats.LOADS_ALREADY_READY);
+            logMsg(PluginLog.DEBUG, "load", "ad already loaded", zoneStatus.zoneName);
+            sendLoadedEvent(zoneStatus);
+
+            // top up multi-slot pools, as a load() would have
+            if ((zoneStatus.poolSize > 1) && zoneStatus.needsRefill() && hasRoomForAd()) {
+                requestInterstitial(zoneStatus);
+            }
+        } else if (zoneStatus.isRequestPending()) {
+            // its 'loaded' or 'failed' event answers this call too
+            zoneStatus.stats.increment(ZoneStats.LOADS_JOINED);
+            logMsg(PluginLog.DEBUG, "load", "joined pending request", zoneStatus.zoneName);
+        } else {
+            requestInterstitial(zoneStatus);
+        }
+    }
+
+    // showOrLoad() for one zone: show a held ad, or have the next fill shown if it arrives by the deadline (must be called on the UI thread)
+    private void showOrLoadZone(final ZoneStatusInfo zoneStatus, final long deadline) {
+        AdColonyInterstitial interstitial = takeAdForShow(zoneStatus);
+        if (interstitial != null) {
+            showInterstitial(zoneStatus, interstitial);
+            return;
+        }
+
+        logMsg(PluginLog.DEBUG, "showOrLoad", "waiting for an ad", zoneStatus.zoneName);
+        if (zoneStatus.requestShowOnFill(deadline)) {
+            // the earlier call's timeout no longer matches, so answer it here
+            logMsg(PluginLog.DEBUG, "showOrLoad", "earlier wait superseded", zoneStatus.zoneName);
+            sendFailedEvent(zoneStatus, RESPONSE_SUPERSEDED);
+        }
+        loadZone(zoneStatus);
+
+        reloadHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (zoneStatus.cancelShowOnFill(deadline)) {
+                    logMsg(PluginLog.DEBUG, "showOrLoad", "no ad before the deadline", zoneStatus.zoneName);
+                    sendFailedEvent(zoneStatus, RESPONSE_TIMEOUT);
+                }
+            }
+        }, Math.max(0, deadline - SystemClock.elapsedRealtime()));
+    }
+
+    // send a 'failed' event for the zone
+    private void sendFailedEvent(ZoneStatusInfo zoneStatus, String response) {
+        // create data
+        Map<String, Object> data = new HashMap<>();
+        data.put(DATA_ZONE_NAME, zoneStatus.zoneName);
+
+        // send Corona Lua event
+        Map<String, Object> coronaEvent = new HashMap<>();
+        coronaEvent.put(EVENT_PHASE_KEY, PHASE_FAILED);
+        coronaEvent.put(EVENT_TYPE_KEY, zoneStatus.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
+        coronaEvent.put(CoronaLuaEvent.ISERROR_KEY, true);
+        coronaEvent.put(CoronaLuaEvent.RESPONSE_KEY, response);
+        coronaEvent.put(EVENT_DATA_KEY, data);
+        dispatchLuaEvent(coronaEvent);
+    }
+
+    // send a 'loaded' event for the zone
+    private void sendLoadedEvent(ZoneStatusInfo zoneStatus) {
+        // create data
+        Map<String, Object> data = new HashMap<>();
+        data.put(DATA_ZONE_NAME, zoneStatus.zoneName);
+
+        // send Corona Lua event
+        Map<String, Object> coronaEvent = new HashMap<>();
+        coronaEvent.put(EVENT_PHASE_KEY, PHASE_LOADED);
+        coronaEvent.put(EVENT_TYPE_KEY, zoneStatus.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
+        coronaEvent.put(EVENT_DATA_KEY, data);
+        dispatchLuaEvent(coronaEvent);
+    }
+
+    // request a new ad for the zone using its last load() options (must be called on the UI thread)
+    private void requestInterstitial(ZoneStatusInfo zoneStatus) {
+        AdColonyAdOptions adOptions = new AdColonyAdOptions();
+        adOptions.enableConfirmationDialog(zoneStatus.prePopup);
+        adOptions.enableResultsDialog(zoneStatus.postPopup);
+
+        CoronaAdColonyInterstitialListener listener = new CoronaAdColonyInterstitialListener(zoneStatus);
+        listener.requestTime = SystemClock.elapsedRealtime();
+        zoneStatus.stats.increment(ZoneStats.REQUESTS);
+
+        zoneStatus.requestStarted();
+        logMsg(PluginLog.DEBUG, "requestInterstitial", "requesting ad", zoneStatus.zoneName);
+        if (!sdk.requestInterstitial(zoneStatus.zoneId, listener, adOptions)) {
+            zoneStatus.requestFinished();
+            logMsg(PluginLog.WARNING, "requestInterstitial", "request rejected by AdColony", zoneStatus.zoneName);
+        }
+    }
+
+    // re-request the zone if autoReload is enabled (immediately after expiry, with jittered exponential backoff after a no-fill)
+    private void scheduleReload(final ZoneStatusInfo zoneStatus, boolean afterNoFill) {
+        if (!autoReload) {
+            return;
+        }
+
+        long delay = 0;
+        if (afterNoFill) {
+            int retry = zoneStatus.nextReloadRetry(AUTORELOAD_MAX_RETRIES);
+            if (retry < 0) {
+                logMsg(PluginLog.WARNING, "autoReload", "autoReload gave up after " + AUTORELOAD_MAX_RETRIES + " attempts, call load() to try again. Zone", zoneStatus.zoneName);
+                return;
+            }
+            long backoff = Math.min(AUTORELOAD_MAX_DELAY_MS, AUTORELOAD_BASE_DELAY_MS << retry);
+            delay = (backoff / 2) + (long) (reloadJitter.nextDouble() * (backoff / 2));
         }
+
+        // only one queued reload per zone
+        if (!zoneStatus.markReloadScheduled()) {
+            return;
+        }
+
+        reloadHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                zoneStatus.clearReloadScheduled();
+                if (autoReload && zoneRegistry.isRegistered(zoneStatus) && zoneStatus.needsRefill()) {
+                    requestInterstitial(zoneStatus);
+                }
+            }
+        }, delay);
+    }
+
+    // drop the zone's ads as they pass maxAdAge, with one check at a time scheduled for the earliest deadline
+    private void scheduleAdAgeCheck(final ZoneStatusInfo zoneStatus) {
+        final long time = zoneStatus.claimAgeCheck();
+        if (time == 0) {
+            return;
+        }
+
+        reloadHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (!zoneStatus.startAgeCheck(time) || !zoneRegistry.isRegistered(zoneStatus)) {
+                    return;
+                }
+
+                expireOverdueAds(zoneStatus);
+
+                // the next ad's deadline
+                scheduleAdAgeCheck(zoneStatus);
+            }
+        }, Math.max(0, time - SystemClock.elapsedRealtime()));
+    }
+
+    // have the UI thread release the ads takeAd() skipped for being past maxAdAge
+    private void releaseOverdueAds(final ZoneStatusInfo zoneStatus) {
+        if (!zoneStatus.hasOverdueAds()) {
+            return;
+        }
+
+        reloadHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (zoneRegistry.isRegistered(zoneStatus)) {
+                    expireOverdueAds(zoneStatus);
+                }
+            }
+        });
+    }
+
+    // drop the zone's ads that are past maxAdAge and report them (must be called on the UI thread)
+    private void expireOverdueAds(ZoneStatusInfo zoneStatus) {
+        int expired = zoneStatus.expireOverdueAds(SystemClock.elapsedRealtime());
+        if (expired == 0) {
+            return;
+        }
+
+        for (int i = 0; i < expired; i++) {
+            zoneStatus.stats.increment(ZoneStats.EXPIRATIONS);
+        }
+        logMsg(PluginLog.DEBUG, "maxAdAge", "ad past maxAdAge dropped", zoneStatus.zoneName);
+
+        // replace it like an ad expired by AdColony
+        if (prefetch) {
+            schedulePrefetch(zoneStatus);
+        } else {
+            scheduleReload(zoneStatus, false);
+        }
+        sendExpiredEvent(zoneStatus, REASON_MAX_AGE);
+    }
+
+    // re-request the zone if prefetch is enabled, timed so the ad is filled shortly before the next expected show
+    private void schedulePrefetch(final ZoneStatusInfo zoneStatus) {
+        if (!prefetch) {
+            return;
+        }
+
+        final int generation = zoneStatus.nextPrefetch();
+        long delay = zoneStatus.getPrefetchDelay(SystemClock.elapsedRealtime(), PREFETCH_LEAD_MS);
+        logMsg(PluginLog.DEBUG, "prefetch", "prefetch scheduled", zoneStatus.zoneName);
+
+        reloadHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (prefetch && zoneStatus.isLatestPrefetch(generation) && zoneRegistry.isRegistered(zoneStatus) && zoneStatus.needsRefill()) {
+                    zoneStatus.stats.increment(ZoneStats.PREFETCHES);
+                    requestInterstitial(zoneStatus);
+                }
+            }
+        }, delay);
     }
 
     // -------------------------------------------------------------------
@@ -339,6 +1055,8 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
 
     // [Lua] init(listener, options)
     private class Init implements NamedJavaFunction {
+        private static final String SIGNATURE = "adcolony.init(listener, options)";
+
         @Override
         public String getName() {
             return "init";
@@ -346,18 +1064,17 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
 
         @Override
         public int invoke(LuaState luaState) {
-            functionSignature = "adcolony.init(listener, options)";
 
             // prevent init from being called more than once
             if (coronaListener != CoronaLua.REFNIL) {
-                logMsg(WARNING_MSG, "init() should only be called once");
+                logMsg(PluginLog.WARNING, SIGNATURE, "init() should only be called once");
                 return 0;
             }
 
             // get number of arguments
             int nargs = luaState.getTop();
             if (nargs != 2) {
-                logMsg(ERROR_MSG, "Expected 2 arguments, got " + nargs);
+                logMsg(PluginLog.ERROR, SIGNATURE, "Expected 2 arguments, got " + nargs);
                 return 0;
             }
 
@@ -365,7 +1082,17 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
             String userId = null;
             String adOrientation = null;
             boolean debugLogging = false;
-            Hashtable<String, String> zoneTable = null;
+            String logLevel = null;
+            boolean enableAutoReload = false;
+            boolean preload = false;
+            boolean enablePrefetch = false;
+            int heldAdLimit = 0;
+            boolean useRewardLedger = false;
+            double maxAdAge = 0;
+            String eventDataFormat = DATA_FORMAT_JSON;
+            ArrayList<ZoneStatusInfo> zones = null;
+            final HashMap<String, String[]> fallbackNames = new HashMap<>();
+            boolean enableRankFallbacks = false;
             Boolean hasUserConsent = null;
             final HashMap<String, String> privacyConsents = new HashMap<>();
             final HashMap<String, Boolean> privacyFrameworks = new HashMap<>();
@@ -373,8 +1100,13 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
             // Get listener key (required)
             if (CoronaLua.isListener(luaState, 1, PROVIDER_NAME)) {
                 coronaListener = CoronaLua.newRef(luaState, 1);
+
+                // deliver events from now on, starting with any held since the last session
+                if ((coronaRuntimeTaskDispatcher != null) && eventQueue.setAttached(true)) {
+                    sendEventDrain();
+                }
             } else {
-                logMsg(ERROR_MSG, "listener expected, got: " + luaState.typeName(1));
+                logMsg(PluginLog.ERROR, SIGNATURE, "listener expected, got: " + luaState.typeName(1));
                 return 0;
             }
 
@@ -388,58 +1120,206 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
                         if (luaState.type(-1) == LuaType.STRING) {
                             appId = luaState.toString(-1);
                         } else {
-                            logMsg(ERROR_MSG, "options.appId (string) expected, got: " + luaState.typeName(-1));
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.appId (string) expected, got: " + luaState.typeName(-1));
                             return 0;
                         }
                     } else if (key.equals("adZones")) {
                         if (luaState.type(-1) == LuaType.TABLE) {
-                            zoneTable = (Hashtable) CoronaLua.toHashtable(luaState, -1);
+                            zones = new ArrayList<>();
+                            int top = luaState.getTop();
+                            for (luaState.pushNil(); luaState.next(top); luaState.pop(1)) {
+                                String zoneName = luaState.toString(-2);
+
+                                if (luaState.type(-1) == LuaType.STRING) {
+                                    zones.add(new ZoneStatusInfo(zoneName, luaState.toString(-1), 1, 0));
+                                } else if (luaState.type(-1) == LuaType.TABLE) {
+                                    String zoneId = null;
+                                    int poolSize = 1;
+                                    int priority = 0;
+
+                                    int zoneTop = luaState.getTop();
+                                    for (luaState.pushNil(); luaState.next(zoneTop); luaState.pop(1)) {
+                                        String zoneKey = luaState.toString(-2);
+
+                                        if (zoneKey.equals(ZONE_ID_KEY)) {
+                                            if (luaState.type(-1) == LuaType.STRING) {
+                                                zoneId = luaState.toString(-1);
+                                            } else {
+                                                logMsg(PluginLog.ERROR, SIGNATURE, "options.adZones." + zoneName + ".id (string) expected, got: " + luaState.typeName(-1));
+                                                return 0;
+                                            }
+                                        } else if (zoneKey.equals(ZONE_POOLSIZE_KEY)) {
+                                            if (luaState.type(-1) == LuaType.NUMBER) {
+                                                poolSize = (int) luaState.toNumber(-1);
+                                            } else {
+                                                logMsg(PluginLog.ERROR, SIGNATURE, "options.adZones." + zoneName + ".poolSize (number) expected, got: " + luaState.typeName(-1));
+                                                return 0;
+                                            }
+                                        } else if (zoneKey.equals(ZONE_PRIORITY_KEY)) {
+                                            if (luaState.type(-1) == LuaType.NUMBER) {
+                                                priority = (int) luaState.toNumber(-1);
+                                            } else {
+                                                logMsg(PluginLog.ERROR, SIGNATURE, "options.adZones." + zoneName + ".priority (number) expected, got: " + luaState.typeName(-1));
+                                                return 0;
+                                            }
+                                        } else if (zoneKey.equals(ZONE_FALLBACKS_KEY)) {
+                                            if (luaState.type(-1) == LuaType.TABLE) {
+                                                int fallbacksIndex = luaState.getTop();
+                                                String[] names = new String[luaState.length(fallbacksIndex)];
+                                                for (int i = 1; i <= names.length; i++) {
+                                                    luaState.rawGet(fallbacksIndex, i);
+                                                    if (luaState.type(-1) != LuaType.STRING) {
+                                                        logMsg(PluginLog.ERROR, SIGNATURE, "options.adZones." + zoneName + ".fallbacks[" + i + "] (string) expected, got: " + luaState.typeName(-1));
+                                                        luaState.pop(1);
+                                                        return 0;
+                                                    }
+                                                    names[i - 1] = luaState.toString(-1);
+                                                    luaState.pop(1);
+                                                }
+                                                fallbackNames.put(zoneName, names);
+                                            } else {
+                                                logMsg(PluginLog.ERROR, SIGNATURE, "options.adZones." + zoneName + ".fallbacks (table) expected, got: " + luaState.typeName(-1));
+                                                return 0;
+                                            }
+                                        } else {
+                                            logMsg(PluginLog.ERROR, SIGNATURE, "Invalid option 'adZones." + zoneName + "." + zoneKey + "'");
+                                            return 0;
+                                        }
+                                    }
+
+                                    if (zoneId == null) {
+                                        logMsg(PluginLog.ERROR, SIGNATURE, "options.adZones." + zoneName + ".id required");
+                                        return 0;
+                                    }
+
+                                    if (poolSize < 1) {
+                                        logMsg(PluginLog.ERROR, SIGNATURE, "options.adZones." + zoneName + ".poolSize must be at least 1");
+                                        return 0;
+                                    }
+
+                                    zones.add(new ZoneStatusInfo(zoneName, zoneId, poolSize, priority));
+                                } else {
+                                    logMsg(PluginLog.ERROR, SIGNATURE, "options.adZones." + zoneName + " (string or table) expected, got: " + luaState.typeName(-1));
+                                    return 0;
+                                }
+                            }
                         } else {
-                            logMsg(ERROR_MSG, "options.adZones (table) expected, got: " + luaState.typeName(-1));
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.adZones (table) expected, got: " + luaState.typeName(-1));
                             return 0;
                         }
                     } else if (key.equals("adOrientation")) {
                         if (luaState.type(-1) == LuaType.STRING) {
                             adOrientation = luaState.toString(-1);
                         } else {
-                            logMsg(ERROR_MSG, "options.adOrientation (string) expected, got: " + luaState.typeName(-1));
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.adOrientation (string) expected, got: " + luaState.typeName(-1));
                             return 0;
                         }
                     } else if (key.equals("userId")) {
                         if (luaState.type(-1) == LuaType.STRING) {
                             userId = luaState.toString(-1);
                         } else {
-                            logMsg(ERROR_MSG, "options.userId (string) expected, got: " + luaState.typeName(-1));
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.userId (string) expected, got: " + luaState.typeName(-1));
                             return 0;
                         }
                     } else if (key.equals("debugLogging")) {
                         if (luaState.type(-1) == LuaType.BOOLEAN) {
                             debugLogging = luaState.toBoolean(-1);
                         } else {
-                            logMsg(ERROR_MSG, "options.debugLogging (boolean) expected, got: " + luaState.typeName(-1));
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.debugLogging (boolean) expected, got: " + luaState.typeName(-1));
                             return 0;
                         }
-                    } else if (key.equals("privacyFrameworks")) {
-                        if (luaState.isTable(-1)) {
-                            int top = luaState.getTop();
-                            for (luaState.pushNil(); luaState.next(top); luaState.pop(1)) {
-                                if(luaState.type(-2) == LuaType.STRING) {
-                                    String consentType = luaState.toString(-2);
-                                    boolean consentValue = luaState.toBoolean(-1);
-                                    if (consentType.equalsIgnoreCase("gdpr")) {
-                                        privacyFrameworks.put(AdColonyAppOptions.GDPR, consentValue);
-                                    } else if (consentType.equalsIgnoreCase("coppa")) {
-                                        privacyFrameworks.put(AdColonyAppOptions.COPPA, consentValue);
-                                    } else if (consentType.equalsIgnoreCase("ccpa")) {
-                                        privacyFrameworks.put(AdColonyAppOptions.CCPA, consentValue);
-                                    }
-                                }
-                            }
+                    } else if (key.equals("logLevel")) {
+                        if (luaState.type(-1) == LuaType.STRING) {
+                            logLevel = luaState.toString(-1);
                         } else {
-                            logMsg(ERROR_MSG, "options.privacyFrameworks expected Table. Got " + luaState.typeName(-1));
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.logLevel (string) expected, got: " + luaState.typeName(-1));
                             return 0;
                         }
-                    } else if (key.equals("privacyConsents")) {
+                    } else if (key.equals("autoReload")) {
+                        if (luaState.type(-1) == LuaType.BOOLEAN) {
+                            enableAutoReload = luaState.toBoolean(-1);
+                        } else {
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.autoReload (boolean) expected, got: " + luaState.typeName(-1));
+                            return 0;
+                        }
+                    } else if (key.equals("preload")) {
+                        if (luaState.type(-1) == LuaType.BOOLEAN) {
+                            preload = luaState.toBoolean(-1);
+                        } else {
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.preload (boolean) expected, got: " + luaState.typeName(-1));
+                            return 0;
+                        }
+                    } else if (key.equals("prefetch")) {
+                        if (luaState.type(-1) == LuaType.BOOLEAN) {
+                            enablePrefetch = luaState.toBoolean(-1);
+                        } else {
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.prefetch (boolean) expected, got: " + luaState.typeName(-1));
+                            return 0;
+                        }
+                    } else if (key.equals("rankFallbacks")) {
+                        if (luaState.type(-1) == LuaType.BOOLEAN) {
+                            enableRankFallbacks = luaState.toBoolean(-1);
+                        } else {
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.rankFallbacks (boolean) expected, got: " + luaState.typeName(-1));
+                            return 0;
+                        }
+                    } else if (key.equals("maxHeldAds")) {
+                        if (luaState.type(-1) == LuaType.NUMBER) {
+                            heldAdLimit = (int) luaState.toNumber(-1);
+                            if (heldAdLimit < 1) {
+                                logMsg(PluginLog.ERROR, SIGNATURE, "options.maxHeldAds must be at least 1");
+                                return 0;
+                            }
+                        } else {
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.maxHeldAds (number) expected, got: " + luaState.typeName(-1));
+                            return 0;
+                        }
+                    } else if (key.equals("rewardLedger")) {
+                        if (luaState.type(-1) == LuaType.BOOLEAN) {
+                            useRewardLedger = luaState.toBoolean(-1);
+                        } else {
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.rewardLedger (boolean) expected, got: " + luaState.typeName(-1));
+                            return 0;
+                        }
+                    } else if (key.equals("maxAdAge")) {
+                        if (luaState.type(-1) == LuaType.NUMBER) {
+                            maxAdAge = luaState.toNumber(-1);
+                            if (maxAdAge <= 0) {
+                                logMsg(PluginLog.ERROR, SIGNATURE, "options.maxAdAge must be greater than 0");
+                                return 0;
+                            }
+                        } else {
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.maxAdAge (number) expected, got: " + luaState.typeName(-1));
+                            return 0;
+                        }
+                    } else if (key.equals("eventDataFormat")) {
+                        if (luaState.type(-1) == LuaType.STRING) {
+                            eventDataFormat = luaState.toString(-1);
+                        } else {
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.eventDataFormat (string) expected, got: " + luaState.typeName(-1));
+                            return 0;
+                        }
+                    } else if (key.equals("privacyFrameworks")) {
+                        if (luaState.isTable(-1)) {
+                            int top = luaState.getTop();
+                            for (luaState.pushNil(); luaState.next(top); luaState.pop(1)) {
+                                if(luaState.type(-2) == LuaType.STRING) {
+                                    String consentType = luaState.toString(-2);
+                                    boolean consentValue = luaState.toBoolean(-1);
+                                    if (consentType.equalsIgnoreCase("gdpr")) {
+                                        privacyFrameworks.put(AdColonyAppOptions.GDPR, consentValue);
+                                    } else if (consentType.equalsIgnoreCase("coppa")) {
+                                        privacyFrameworks.put(AdColonyAppOptions.COPPA, consentValue);
+                                    } else if (consentType.equalsIgnoreCase("ccpa")) {
+                                        privacyFrameworks.put(AdColonyAppOptions.CCPA, consentValue);
+                                    }
+                                }
+                            }
+                        } else {
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.privacyFrameworks expected Table. Got " + luaState.typeName(-1));
+                            return 0;
+                        }
+                    } else if (key.equals("privacyConsents")) {
                         if (luaState.isTable(-1)) {
                             int top = luaState.getTop();
                             for (luaState.pushNil(); luaState.next(top); luaState.pop(1)) {
@@ -456,24 +1336,24 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
                                 }
                             }
                         } else {
-                            logMsg(ERROR_MSG, "options.privacyConsents expected Table. Got " + luaState.typeName(-1));
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.privacyConsents expected Table. Got " + luaState.typeName(-1));
                             return 0;
                         }
                     } else if (key.equals("hasUserConsent")) {
                         if (luaState.type(-1) == LuaType.BOOLEAN) {
-                            logMsg(WARNING_MSG, "options.hasUserConsent is deprecated. Assuming GDPR");
+                            logMsg(PluginLog.WARNING, SIGNATURE, "options.hasUserConsent is deprecated. Assuming GDPR");
                             hasUserConsent = luaState.toBoolean(-1);
                         } else {
-                            logMsg(ERROR_MSG, "options.hasUserConsent expected (boolean). Got " + luaState.typeName(-1));
+                            logMsg(PluginLog.ERROR, SIGNATURE, "options.hasUserConsent expected (boolean). Got " + luaState.typeName(-1));
                             return 0;
                         }
                     } else {
-                        logMsg(ERROR_MSG, "Invalid option '" + key + "'");
+                        logMsg(PluginLog.ERROR, SIGNATURE, "Invalid option '" + key + "'");
                         return 0;
                     }
                 }
             } else { // no options table
-                logMsg(ERROR_MSG, "options table expected, got " + luaState.typeName(2));
+                logMsg(PluginLog.ERROR, SIGNATURE, "options table expected, got " + luaState.typeName(2));
                 return 0;
             }
 
@@ -488,92 +1368,196 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
 
             // validation
             if (appId == null) {
-                logMsg(ERROR_MSG, "options.appId required");
+                logMsg(PluginLog.ERROR, SIGNATURE, "options.appId required");
+                return 0;
+            }
+
+            if (zones == null) {
+                logMsg(PluginLog.ERROR, SIGNATURE, "options.adZones required");
                 return 0;
             }
 
-            if (zoneTable == null) {
-                logMsg(ERROR_MSG, "options.adZones required");
+            // fallbacks must name other configured zones
+            for (Map.Entry<String, String[]> entry : fallbackNames.entrySet()) {
+                for (String fallbackName : entry.getValue()) {
+                    boolean found = false;
+                    for (ZoneStatusInfo zone : zones) {
+                        found |= zone.zoneName.equals(fallbackName);
+                    }
+                    if (!found || fallbackName.equals(entry.getKey())) {
+                        logMsg(PluginLog.ERROR, SIGNATURE, "options.adZones." + entry.getKey() + ".fallbacks. Invalid zone '" + fallbackName + "'");
+                        return 0;
+                    }
+                }
+            }
+
+            if (!eventDataFormat.equals(DATA_FORMAT_JSON) && !eventDataFormat.equals(DATA_FORMAT_TABLE)) {
+                logMsg(PluginLog.ERROR, SIGNATURE, "options.eventDataFormat. Invalid format '" + eventDataFormat + "'");
                 return 0;
             }
 
             if (adOrientation!=null && !adOrientation.equals(LANDSCAPE) && !adOrientation.equals(PORTRAIT)) {
-                logMsg(ERROR_MSG, "options.adOrientation. Invalid orientation '" + adOrientation + "'");
+                logMsg(PluginLog.ERROR, SIGNATURE, "options.adOrientation. Invalid orientation '" + adOrientation + "'");
                 return 0;
             }
 
-            // create zone id array for initialization
-            String[] zoneIdArray = new String[zoneTable.size()];
-            int i = 0;
-            for (String zoneName : zoneTable.keySet()) {
-                zoneIdArray[i++] = zoneTable.get(zoneName);
+            // console output (debugLogging is a shortcut for logLevel "debug")
+            int consoleLevel = debugLogging ? PluginLog.DEBUG : PluginLog.INFO;
+            if (logLevel != null) {
+                consoleLevel = PluginLog.parseLevel(logLevel);
+                if (consoleLevel < 0) {
+                    logMsg(PluginLog.ERROR, SIGNATURE, "options.logLevel. Invalid level '" + logLevel + "'");
+                    return 0;
+                }
+            }
+            pluginLog.setConsoleLevel(consoleLevel);
+
+            // save values for future use, keeping the ads of the previous activity if nothing changed
+            final boolean warmStart = zoneRegistry.matches(appId, zones);
+            if (warmStart) {
+                zoneRegistry.reuse();
+            } else {
+                if (zoneRegistry.isRetained()) {
+                    // events about the released ads mean nothing to this listener
+                    eventQueue.clearNonDurable();
+                }
+                zoneRegistry.configure(appId, zones);
+            }
+            for (ZoneStatusInfo zone : zoneRegistry.getZoneList()) {
+                zone.maxAdAgeMs = (long) (maxAdAge * 1000);
+
+                String[] names = fallbackNames.get(zone.zoneName);
+                ZoneStatusInfo[] fallbacks = ZoneStatusInfo.NO_ZONES;
+                if (names != null) {
+                    fallbacks = new ZoneStatusInfo[names.length];
+                    for (int i = 0; i < names.length; i++) {
+                        fallbacks[i] = zoneRegistry.getByName(names[i]);
+                    }
+                }
+                zone.fallbacks = fallbacks;
+            }
+            autoReload = enableAutoReload;
+            prefetch = enablePrefetch;
+            rankFallbacks = enableRankFallbacks;
+            maxHeldAds = heldAdLimit;
+            eventDataAsTable = eventDataFormat.equals(DATA_FORMAT_TABLE);
+
+            // release held ads when the system runs low on memory
+            Context context = CoronaEnvironment.getApplicationContext();
+            if ((context != null) && (memoryCallbacksContext == null)) {
+                context.registerComponentCallbacks(memoryCallbacks);
+                memoryCallbacksContext = context;
             }
 
-            // save values for future use
-            adcolonyObjects.put(APPID_KEY, appId);
-            adcolonyObjects.put(ZONETABLE_KEY, zoneTable);
+            // read back rewards that were not acknowledged in earlier sessions (a retained ledger has them already)
+            if (!useRewardLedger && (rewardLedger != null)) {
+                // rewards journaled since the last activity stay in the file for when the option is set again
+                RewardLedger ledger = rewardLedger;
+                rewardLedger = null;
+                ledger.close();
+            } else if (useRewardLedger && (rewardLedger == null)) {
+                try {
+                    rewardLedger = RewardLedger.open(CoronaEnvironment.getApplicationContext().getFilesDir());
+                } catch (IOException e) {
+                    logMsg(PluginLog.ERROR, SIGNATURE, "could not open the reward ledger", e);
+                }
+            }
 
             // declare final variables for inner loop
+            final long initTime = SystemClock.elapsedRealtime();
             final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
             final String fAppId = appId;
             final String fUserId = userId;
-            final String[] fZoneIdArray = zoneIdArray;
-            final Hashtable<String, String> fZoneTable = zoneTable;
+            final String[] fZoneIdArray = zoneRegistry.getZoneIds();
             final String fAdOrientation = adOrientation;
+            final boolean fPreload = preload;
 
             // Run the activity on the uiThread
             if (coronaActivity != null) {
                 Runnable runnableActivity = new Runnable() {
                     public void run() {
-                        // Create a new runnable object to invoke our activity
-                        Runnable runnableActivity = new Runnable() {
-                            public void run() {
-                                // configure app options
-                                AdColonyAppOptions appOptions = new AdColonyAppOptions();
-                                String targetStore = android.os.Build.MANUFACTURER.equals("Amazon") ? "amazon" : "google";
-                                appOptions.setOriginStore(targetStore);
-                                if(fAdOrientation!=null) {
-                                    appOptions.setRequestedAdOrientation(fAdOrientation.equals(LANDSCAPE) ? AdColonyAppOptions.LANDSCAPE : AdColonyAppOptions.PORTRAIT);
-                                }
+                        // configure app options
+                        AdColonyAppOptions appOptions = new AdColonyAppOptions();
+                        String targetStore = android.os.Build.MANUFACTURER.equals("Amazon") ? "amazon" : "google";
+                        appOptions.setOriginStore(targetStore);
+                        if(fAdOrientation!=null) {
+                            appOptions.setRequestedAdOrientation(fAdOrientation.equals(LANDSCAPE) ? AdColonyAppOptions.LANDSCAPE : AdColonyAppOptions.PORTRAIT);
+                        }
 
-                                // set custom user id
-                                if (fUserId != null) {
-                                    appOptions.setUserID(fUserId);
-                                }
+                        // set custom user id
+                        if (fUserId != null) {
+                            appOptions.setUserID(fUserId);
+                        }
 
-                                for (Map.Entry<String, Boolean> entry : privacyFrameworks.entrySet()) {
-                                    appOptions.setPrivacyFrameworkRequired(entry.getKey(), entry.getValue());
-                                }
+                        for (Map.Entry<String, Boolean> entry : privacyFrameworks.entrySet()) {
+                            appOptions.setPrivacyFrameworkRequired(entry.getKey(), entry.getValue());
+                        }
 
-                                for (Map.Entry<String, String> entry : privacyConsents.entrySet()) {
-                                    appOptions.setPrivacyConsentString(entry.getKey(), entry.getValue());
-                                }
+                        for (Map.Entry<String, String> entry : privacyConsents.entrySet()) {
+                            appOptions.setPrivacyConsentString(entry.getKey(), entry.getValue());
+                        }
+
+                        // initialize the SDK (already configured on a warm start, only the options can change)
+                        long configureStartTime = SystemClock.elapsedRealtime();
+                        if (warmStart) {
+                            sdk.setAppOptions(appOptions);
+                        } else {
+                            sdk.configure(coronaActivity, appOptions, fAppId, fZoneIdArray);
+                        }
+                        sdk.setRewardListener(new CoronaAdColonyRewardListener());
+                        long configureEndTime = SystemClock.elapsedRealtime();
+
+                        // log plugin version to console
+                        logMsg(PluginLog.INFO, "", PLUGIN_NAME + ": " + PLUGIN_VERSION + ", SDK", PLUGIN_SDK_VERSION);
 
-                                // initialize the SDK
-                                AdColony.configure(coronaActivity, appOptions, fAppId, fZoneIdArray);
-                                AdColony.setRewardListener(new CoronaAdColonyRewardListener());
+                        // cache zone settings known to the SDK so far
+                        for (ZoneStatusInfo zone : zoneRegistry.getZones()) {
+                            zone.updateMetadata(sdk.getZone(zone.zoneId));
+                        }
 
-                                // log plugin version to console
-                                Log.i(CORONA_TAG, PLUGIN_NAME + ": " + PLUGIN_VERSION + " (SDK: " + PLUGIN_SDK_VERSION + ")");
+                        // create data (startup cost in milliseconds)
+                        Map<String, Object> data = new HashMap<>();
+                        data.put(DATA_QUEUED_MS, configureStartTime - initTime);
+                        data.put(DATA_CONFIGURE_MS, configureEndTime - configureStartTime);
+                        data.put(DATA_TOTAL_MS, configureEndTime - requireTime);
+                        data.put(DATA_WARM_START, warmStart);
 
-                                // configure zone status
-                                HashMap<String, ZoneStatusInfo> zoneStatus = new HashMap<>();
-                                for (String zoneName : fZoneTable.keySet()) {
-                                    zoneStatus.put(fZoneTable.get(zoneName), new ZoneStatusInfo(zoneName));
-                                }
-                                adcolonyObjects.put(ZONESTATUS_KEY, zoneStatus);
+                        // send Corona Lua event
+                        Map<String, Object> coronaEvent = new HashMap<>();
+                        coronaEvent.put(EVENT_PHASE_KEY, PHASE_INIT);
+                        coronaEvent.put(EVENT_DATA_KEY, data);
+                        dispatchLuaEvent(coronaEvent);
+
+                        // give the player the rewards they did not get last time (including those granted while no runtime was attached)
+                        rewardsDeferred = false;
+                        RewardLedger ledger = rewardLedger;
+                        if (ledger != null) {
+                            replayRewards(ledger);
+                        }
 
-                                // flag sdk as ready
-                                adcolonyObjects.put(SDK_READY_KEY, true);
+                        // retained ads still expire at their maxAdAge deadline
+                        if (warmStart) {
+                            for (ZoneStatusInfo zone : zoneRegistry.getZoneList()) {
+                                releaseOverdueAds(zone);
+                                scheduleAdAgeCheck(zone);
+                            }
+                        }
 
-                                // send Corona Lua event
-                                Map<String, Object> coronaEvent = new HashMap<>();
-                                coronaEvent.put(EVENT_PHASE_KEY, PHASE_INIT);
-                                dispatchLuaEvent(coronaEvent);
+                        // load the zones in this same task (skipping zones whose retained ads are still held),
+                        // most important first and only as many as maxHeldAds leaves room for
+                        if (fPreload) {
+                            for (ZoneStatusInfo zone : ZoneRegistry.rankByPriority(zoneRegistry.getZoneList())) {
+                                if (!hasRoomForRequest()) {
+                                    break;
+                                }
+                                if (!warmStart || zone.needsRefill()) {
+                                    requestInterstitial(zone);
+                                }
                             }
-                        };
+                        }
 
-                        coronaActivity.runOnUiThread(runnableActivity);
+                        // flag sdk as ready and run calls made while it was being configured
+                        runPendingCommands();
                     }
                 };
 
@@ -587,6 +1571,8 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
     // [Lua] isLoaded(zoneName)
     @SuppressWarnings("unused")
     private class IsLoaded implements NamedJavaFunction {
+        private static final String SIGNATURE = "adcolony.isLoaded(zoneName)";
+
         @Override
         public String getName() {
             return "isLoaded";
@@ -594,40 +1580,27 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
 
         @Override
         public int invoke(LuaState luaState) {
-            functionSignature = "adcolony.isLoaded(zoneName)";
 
-            // don't continue if SDK isn't initialized
-            if (!isSDKInitialized()) {
+            // don't continue if init() hasn't been called
+            if (!isInitCalled(SIGNATURE)) {
                 return 0;
             }
 
             // get number of arguments
             int nargs = luaState.getTop();
             if (nargs != 1) {
-                logMsg(ERROR_MSG, "1 argument expected, got " + nargs);
+                logMsg(PluginLog.ERROR, SIGNATURE, "1 argument expected, got " + nargs);
                 return 0;
             }
 
-            String zoneName = null;
-
-            // get zone id
-            if (luaState.type(1) == LuaType.STRING) {
-                zoneName = luaState.toString(1);
-            } else {
-                logMsg(ERROR_MSG, "zoneName (string) expected, got " + luaState.typeName(1));
+            // get zone (by name or handle)
+            ZoneStatusInfo zoneStatus = getZoneOrLogError(SIGNATURE, luaState, 1);
+            if (zoneStatus == null) {
                 return 0;
             }
 
-            String zoneId = ((Hashtable<String, String>) adcolonyObjects.get(ZONETABLE_KEY)).get(zoneName);
-
-            if (zoneId == null) {
-                logMsg(ERROR_MSG, "zoneName '" + zoneName + "' doesn't exist");
-                return 0;
-            }
-
-            ZoneStatusInfo zoneStatus = (ZoneStatusInfo) ((HashMap) adcolonyObjects.get(ZONESTATUS_KEY)).get(zoneId);
-            AdColonyInterstitial interstitial = (AdColonyInterstitial) zoneStatus.adObject;
-            boolean isLoaded = ((interstitial != null) && (!interstitial.isExpired()) && zoneStatus.loaded);
+            // lock-free read of the zone's state word, no SDK call
+            boolean isLoaded = zoneRegistry.isSDKReady() && zoneStatus.getState().isReady(SystemClock.elapsedRealtime());
 
             luaState.pushBoolean(isLoaded);
 
@@ -638,6 +1611,8 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
     // [Lua] show(zoneName)
     @SuppressWarnings("unused")
     private class Show implements NamedJavaFunction {
+        private static final String SIGNATURE = "adcolony.show(zoneName)";
+
         @Override
         public String getName() {
             return "show";
@@ -645,70 +1620,157 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
 
         @Override
         public int invoke(LuaState luaState) {
-            functionSignature = "adcolony.show(zoneName)";
 
-            // don't continue if SDK isn't initialized
-            if (!isSDKInitialized()) {
+            // don't continue if init() hasn't been called
+            if (!isInitCalled(SIGNATURE)) {
                 return 0;
             }
 
             // get number of arguments
             int nargs = luaState.getTop();
             if (nargs != 1) {
-                logMsg(ERROR_MSG, "Expected 1 argument, got " + nargs);
+                logMsg(PluginLog.ERROR, SIGNATURE, "Expected 1 argument, got " + nargs);
                 return 0;
             }
 
-            String zoneName = null;
+            // get zone (by name or handle)
+            final ZoneStatusInfo zoneStatus = getZoneOrLogError(SIGNATURE, luaState, 1);
+            if (zoneStatus == null) {
+                return 0;
+            }
 
-            // get zone name
-            if (luaState.type(1) == LuaType.STRING) {
-                zoneName = luaState.toString(1);
-            } else {
-                logMsg(ERROR_MSG, "zoneName (string) expected, got " + luaState.typeName(1));
+            // before the SDK is ready, show once configure has completed if an ad is available by then
+            final String fZoneName = zoneStatus.zoneName;
+            if (!zoneRegistry.isSDKReady() && deferUntilReady(new Runnable() {
+                @Override
+                public void run() {
+                    AdColonyInterstitial interstitial = takeAdForShow(zoneStatus);
+                    if (interstitial != null) {
+                        showInterstitial(zoneStatus, interstitial);
+                    } else {
+                        logMsg(PluginLog.ERROR, SIGNATURE, "No ad available for zone '" + fZoneName + "'");
+                    }
+                }
+            })) {
                 return 0;
             }
 
-            String zoneId = ((Hashtable<String, String>) adcolonyObjects.get(ZONETABLE_KEY)).get(zoneName);
+            // declare final vars for inner loop
+            final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
 
-            if (zoneId == null) {
-                logMsg(ERROR_MSG, "zoneName '" + zoneName + "' doesn't exist");
+            // without an activity the ad could not be shown, so leave it in the pool
+            if (coronaActivity == null) {
                 return 0;
             }
 
-            ZoneStatusInfo zoneStatus = (ZoneStatusInfo) ((HashMap) adcolonyObjects.get(ZONESTATUS_KEY)).get(zoneId);
+            final AdColonyInterstitial interstitial = takeAdForShow(zoneStatus);
 
-            // declare final vars for inner loop
-            final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
-            final AdColonyInterstitial interstitial = (AdColonyInterstitial) zoneStatus.adObject;
-            final boolean isLoaded = ((interstitial != null) && (!interstitial.isExpired()) && zoneStatus.loaded);
-            final String fZoneName = zoneName;
+            if (interstitial == null) {
+                logMsg(PluginLog.ERROR, SIGNATURE, "No ad available for zone '" + fZoneName + "'");
+                return 0;
+            }
+
+            coronaActivity.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    showInterstitial(zoneStatus, interstitial);
+                }
+            });
+
+            return 0;
+        }
+    }
+
+    // [Lua] showOrLoad(zoneName [, options])
+    @SuppressWarnings("unused")
+    private class ShowOrLoad implements NamedJavaFunction {
+        private static final String SIGNATURE = "adcolony.showOrLoad(zoneName [, options])";
+
+        @Override
+        public String getName() {
+            return "showOrLoad";
+        }
+
+        @Override
+        public int invoke(LuaState luaState) {
 
-            if (!isLoaded) {
-                logMsg(ERROR_MSG, "No ad available for zone '" + zoneName + "'");
+            // don't continue if init() hasn't been called
+            if (!isInitCalled(SIGNATURE)) {
                 return 0;
             }
 
-            if (coronaActivity != null) {
-                coronaActivity.runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        // send coronaOnOpened (see onOpened listener for details)
-                        CoronaAdColonyInterstitialListener listener = (CoronaAdColonyInterstitialListener) interstitial.getListener();
-                        listener.coronaOnOpened(interstitial);
+            // get number of arguments
+            int nargs = luaState.getTop();
+            if ((nargs < 1) || (nargs > 2)) {
+                logMsg(PluginLog.ERROR, SIGNATURE, "Expected 1 or 2 arguments, got " + nargs);
+                return 0;
+            }
+
+            // get zone (by name or handle)
+            final ZoneStatusInfo zoneStatus = getZoneOrLogError(SIGNATURE, luaState, 1);
+            if (zoneStatus == null) {
+                return 0;
+            }
+
+            long timeoutMs = SHOW_OR_LOAD_TIMEOUT_MS;
+
+            // check for options table (optional)
+            if (!luaState.isNoneOrNil(2)) {
+                if (luaState.type(2) == LuaType.TABLE) {
+                    // traverse and verify all options
+                    for (luaState.pushNil(); luaState.next(2); luaState.pop(1)) {
+                        String key = luaState.toString(-2);
 
-                        interstitial.show();
+                        if (key.equals("timeoutMs")) {
+                            if (luaState.type(-1) == LuaType.NUMBER) {
+                                timeoutMs = (long) luaState.toNumber(-1);
+                            } else {
+                                logMsg(PluginLog.ERROR, SIGNATURE, "options.timeoutMs (number) expected, got: " + luaState.typeName(-1));
+                                return 0;
+                            }
+                            if (timeoutMs <= 0) {
+                                logMsg(PluginLog.ERROR, SIGNATURE, "options.timeoutMs must be greater than 0");
+                                return 0;
+                            }
+                        } else {
+                            logMsg(PluginLog.ERROR, SIGNATURE, "Invalid option ' " + key + "'");
+                            return 0;
+                        }
                     }
-                });
+                } else { // no options table
+                    logMsg(PluginLog.ERROR, SIGNATURE, "options table expected, got " + luaState.typeName(2));
+                    return 0;
+                }
+            }
+
+            // declare final vars for inner loop (the deadline counts from this call, even if init() is still running)
+            final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
+            final long deadline = SystemClock.elapsedRealtime() + timeoutMs;
+
+            Runnable runnableActivity = new Runnable() {
+                public void run() {
+                    showOrLoadZone(zoneStatus, deadline);
+                }
+            };
+
+            // before the SDK is ready, start once configure has completed
+            if (!zoneRegistry.isSDKReady() && deferUntilReady(runnableActivity)) {
+                return 0;
+            }
+
+            if (coronaActivity != null) {
+                coronaActivity.runOnUiThread(runnableActivity);
             }
 
             return 0;
         }
     }
 
-    // [Lua] load(zoneName [, options])
+    // [Lua] load(zoneName [, options]) or load({zoneName, ...} [, options])
     @SuppressWarnings("unused")
     private class Load implements NamedJavaFunction {
+        private static final String SIGNATURE = "adcolony.load(zoneName [, options])";
+
         @Override
         public String getName() {
             return "load";
@@ -716,29 +1778,50 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
 
         @Override
         public int invoke(LuaState luaState) {
-            functionSignature = "adcolony.load(zoneName [, options])";
 
-            // don't continue if SDK isn't initialized
-            if (!isSDKInitialized()) {
+            // don't continue if init() hasn't been called
+            if (!isInitCalled(SIGNATURE)) {
                 return 0;
             }
 
             // get number of arguments
             int nargs = luaState.getTop();
             if ((nargs < 1) || (nargs > 2)) {
-                logMsg(ERROR_MSG, "Expected 1 or 2 arguments, got " + nargs);
+                logMsg(PluginLog.ERROR, SIGNATURE, "Expected 1 or 2 arguments, got " + nargs);
                 return 0;
             }
 
-            final String zoneName;
+            final ArrayList<ZoneStatusInfo> zones = new ArrayList<>();
             boolean prePopup = false;
             boolean postPopup = false;
 
-            // get zone name
-            if (luaState.type(1) == LuaType.STRING) {
-                zoneName = luaState.toString(1);
+            // get zone name or handle (or an array of them)
+            if ((luaState.type(1) == LuaType.STRING) || (luaState.type(1) == LuaType.NUMBER)) {
+                ZoneStatusInfo zoneStatus = getZoneOrLogError(SIGNATURE, luaState, 1);
+                if (zoneStatus == null) {
+                    return 0;
+                }
+                zones.add(zoneStatus);
+            } else if (luaState.type(1) == LuaType.TABLE) {
+                int ntypes = luaState.length(1);
+                if (ntypes == 0) {
+                    logMsg(PluginLog.ERROR, SIGNATURE, "zoneNames table is empty");
+                    return 0;
+                }
+
+                for (int i = 1; i <= ntypes; i++) {
+                    luaState.rawGet(1, i);
+                    ZoneStatusInfo zoneStatus = getZoneOrLogError(SIGNATURE, luaState, -1);
+                    luaState.pop(1);
+                    if (zoneStatus == null) {
+                        return 0;
+                    }
+                    if (!zones.contains(zoneStatus)) {
+                        zones.add(zoneStatus);
+                    }
+                }
             } else {
-                logMsg(ERROR_MSG, "zoneName (string) expected, got " + luaState.typeName(1));
+                logMsg(PluginLog.ERROR, SIGNATURE, "zoneName (string), zone handle (number) or a table of them expected, got " + luaState.typeName(1));
                 return 0;
             }
 
@@ -753,52 +1836,53 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
                             if (luaState.type(-1) == LuaType.BOOLEAN) {
                                 prePopup = luaState.toBoolean(-1);
                             } else {
-                                logMsg(ERROR_MSG, "options.prePopup (boolean) expected, got: " + luaState.typeName(-1));
+                                logMsg(PluginLog.ERROR, SIGNATURE, "options.prePopup (boolean) expected, got: " + luaState.typeName(-1));
                                 return 0;
                             }
                         } else if (key.equals("postPopup")) {
                             if (luaState.type(-1) == LuaType.BOOLEAN) {
                                 postPopup = luaState.toBoolean(-1);
                             } else {
-                                logMsg(ERROR_MSG, "options.postPopup (boolean) expected, got: " + luaState.typeName(-1));
+                                logMsg(PluginLog.ERROR, SIGNATURE, "options.postPopup (boolean) expected, got: " + luaState.typeName(-1));
                                 return 0;
                             }
                         } else {
-                            logMsg(ERROR_MSG, "Invalid option ' " + key + "'");
+                            logMsg(PluginLog.ERROR, SIGNATURE, "Invalid option ' " + key + "'");
                             return 0;
                         }
                     }
                 } else { // no options table
-                    logMsg(ERROR_MSG, "options table expected, got " + luaState.typeName(2));
+                    logMsg(PluginLog.ERROR, SIGNATURE, "options table expected, got " + luaState.typeName(2));
                     return 0;
                 }
             }
 
-            // get zone config
-            final String zoneId = ((Hashtable<String, String>) adcolonyObjects.get(ZONETABLE_KEY)).get(zoneName);
-            if (zoneId == null) {
-                logMsg(ERROR_MSG, "zoneName '" + zoneName + "' doesn't exist");
-                return 0;
+            // save ad options (also used when refilling the zones' pools)
+            for (ZoneStatusInfo zoneStatus : zones) {
+                zoneStatus.prePopup = prePopup;
+                zoneStatus.postPopup = postPopup;
+                zoneStatus.resetReloadRetries();
             }
 
             // declare final vars for inner loop
             final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
-            final boolean fPrePopup = prePopup;
-            final boolean fPostPopup = postPopup;
-
-            if (coronaActivity != null) {
-                Runnable runnableActivity = new Runnable() {
-                    public void run() {
-                        // set ad options
-                        AdColonyAdOptions adOptions = new AdColonyAdOptions();
-                        adOptions.enableConfirmationDialog(fPrePopup);
-                        adOptions.enableResultsDialog(fPostPopup);
 
-                        // load the ad
-                        AdColony.requestInterstitial(zoneId, new CoronaAdColonyInterstitialListener(zoneName), adOptions);
+            // one UI thread task for all zones
+            Runnable runnableActivity = new Runnable() {
+                public void run() {
+                    // load the ads, unless they are loaded or loading already
+                    for (ZoneStatusInfo zoneStatus : zones) {
+                        loadZone(zoneStatus);
                     }
-                };
+                }
+            };
 
+            // before the SDK is ready, load as soon as configure has completed
+            if (!zoneRegistry.isSDKReady() && deferUntilReady(runnableActivity)) {
+                return 0;
+            }
+
+            if (coronaActivity != null) {
                 coronaActivity.runOnUiThread(runnableActivity);
             }
 
@@ -809,6 +1893,8 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
     // [Lua] getInfoForZone(zoneName)
     @SuppressWarnings("unused")
     private class GetInfoForZone implements NamedJavaFunction {
+        private static final String SIGNATURE = "adcolony.getInfoForZone(zoneName)";
+
         @Override
         public String getName() {
             return "getInfoForZone";
@@ -816,59 +1902,260 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
 
         @Override
         public int invoke(LuaState luaState) {
-            functionSignature = "adcolony.getInfoForZone(zoneName)";
 
-            // don't continue if SDK isn't initialized
-            if (!isSDKInitialized()) {
+            // don't continue if init() hasn't been called
+            if (!isInitCalled(SIGNATURE)) {
                 return 0;
             }
 
             // get number of arguments
             int nargs = luaState.getTop();
             if (nargs != 1) {
-                logMsg(ERROR_MSG, "1 argument expected, got " + nargs);
+                logMsg(PluginLog.ERROR, SIGNATURE, "1 argument expected, got " + nargs);
                 return 0;
             }
 
-            String zoneName = null;
+            // get zone (by name or handle)
+            final ZoneStatusInfo zoneStatus = getZoneOrLogError(SIGNATURE, luaState, 1);
+            if (zoneStatus == null) {
+                return 0;
+            }
 
-            // get zone id
+            // before the SDK is ready, send the info once configure has completed
+            if (!zoneRegistry.isSDKReady() && deferUntilReady(new Runnable() {
+                @Override
+                public void run() {
+                    sendZoneInfo(zoneStatus);
+                }
+            })) {
+                return 0;
+            }
+
+            sendZoneInfo(zoneStatus);
+
+            return 0;
+        }
+    }
+
+    // [Lua] getStats([zoneName])
+    @SuppressWarnings("unused")
+    private class GetStats implements NamedJavaFunction {
+        private static final String SIGNATURE = "adcolony.getStats([zoneName])";
+
+        @Override
+        public String getName() {
+            return "getStats";
+        }
+
+        @Override
+        public int invoke(LuaState luaState) {
+
+            // don't continue if init() hasn't been called
+            if (!isInitCalled(SIGNATURE)) {
+                return 0;
+            }
+
+            // get number of arguments
+            int nargs = luaState.getTop();
+            if (nargs > 1) {
+                logMsg(PluginLog.ERROR, SIGNATURE, "Expected 0 or 1 argument, got " + nargs);
+                return 0;
+            }
+
+            // stats of a single zone
+            if (!luaState.isNoneOrNil(1)) {
+                ZoneStatusInfo zoneStatus = getZoneOrLogError(SIGNATURE, luaState, 1);
+                if (zoneStatus == null) {
+                    return 0;
+                }
+
+                pushZoneStats(luaState, zoneStatus.stats);
+                return 1;
+            }
+
+            // stats of all zones, keyed by zone name
+            luaState.newTable();
+            for (ZoneStatusInfo zoneStatus : zoneRegistry.getZones()) {
+                pushZoneStats(luaState, zoneStatus.stats);
+                luaState.setField(-2, zoneStatus.zoneName);
+            }
+
+            return 1;
+        }
+    }
+
+    // [Lua] getReadyZones()
+    @SuppressWarnings("unused")
+    private class GetReadyZones implements NamedJavaFunction {
+        private static final String SIGNATURE = "adcolony.getReadyZones()";
+
+        @Override
+        public String getName() {
+            return "getReadyZones";
+        }
+
+        @Override
+        public int invoke(LuaState luaState) {
+
+            // don't continue if init() hasn't been called
+            if (!isInitCalled(SIGNATURE)) {
+                return 0;
+            }
+
+            // get number of arguments
+            int nargs = luaState.getTop();
+            if (nargs != 0) {
+                logMsg(PluginLog.ERROR, SIGNATURE, "Expected no arguments, got " + nargs);
+                return 0;
+            }
+
+            // readiness of all zones from the state words kept up to date by the SDK callbacks
+            ZoneStatusInfo[] zones = zoneRegistry.getZoneList();
+            boolean sdkReady = zoneRegistry.isSDKReady();
+            long now = SystemClock.elapsedRealtime();
+            luaState.newTable(0, zones.length);
+            for (ZoneStatusInfo zoneStatus : zones) {
+                luaState.pushBoolean(sdkReady && zoneStatus.getState().isReady(now));
+                luaState.setField(-2, zoneStatus.zoneName);
+            }
+
+            return 1;
+        }
+    }
+
+    // [Lua] getZoneHandle(zoneName)
+    @SuppressWarnings("unused")
+    private class GetZoneHandle implements NamedJavaFunction {
+        private static final String SIGNATURE = "adcolony.getZoneHandle(zoneName)";
+
+        @Override
+        public String getName() {
+            return "getZoneHandle";
+        }
+
+        @Override
+        public int invoke(LuaState luaState) {
+
+            // don't continue if init() hasn't been called
+            if (!isInitCalled(SIGNATURE)) {
+                return 0;
+            }
+
+            // get number of arguments
+            int nargs = luaState.getTop();
+            if (nargs != 1) {
+                logMsg(PluginLog.ERROR, SIGNATURE, "Expected 1 argument, got " + nargs);
+                return 0;
+            }
+
+            String zoneName;
             if (luaState.type(1) == LuaType.STRING) {
                 zoneName = luaState.toString(1);
             } else {
-                logMsg(ERROR_MSG, "zoneName (string) expected, got " + luaState.typeName(1));
+                logMsg(PluginLog.ERROR, SIGNATURE, "zoneName (string) expected, got " + luaState.typeName(1));
                 return 0;
             }
 
-            String zoneId = ((Hashtable<String, String>) adcolonyObjects.get(ZONETABLE_KEY)).get(zoneName);
-            if (zoneId == null) {
-                logMsg(ERROR_MSG, "zoneName '" + zoneName + "' doesn't exist");
+            int handle = zoneRegistry.getHandle(zoneName);
+            if (handle == 0) {
+                logMsg(PluginLog.ERROR, SIGNATURE, "zoneName '" + zoneName + "' doesn't exist");
                 return 0;
             }
 
-            AdColonyZone zoneInfo = AdColony.getZone(zoneId);
+            luaState.pushInteger(handle);
+            return 1;
+        }
+    }
 
-            // create data
-            JSONObject data = new JSONObject();
-            try {
-                data.put("zoneName", zoneName);
-                data.put("isRewardedZone", zoneInfo.isRewarded());
-                data.put("virtualCurrencyName", zoneInfo.getRewardName());
-                data.put("rewardAmount", zoneInfo.getRewardAmount());
-                data.put("viewsPerReward", zoneInfo.getViewsPerReward());
-                data.put("viewsUntilReward", zoneInfo.getRemainingViewsUntilReward());
-            } catch (Exception e) {
-                System.err.println();
+    // [Lua] ackReward(rewardId)
+    @SuppressWarnings("unused")
+    private class AckReward implements NamedJavaFunction {
+        private static final String SIGNATURE = "adcolony.ackReward(rewardId)";
+
+        @Override
+        public String getName() {
+            return "ackReward";
+        }
+
+        @Override
+        public int invoke(LuaState luaState) {
+
+            // don't continue if init() hasn't been called
+            if (!isInitCalled(SIGNATURE)) {
+                return 0;
             }
 
-            // send Corona Lua event
-            Map<String, Object> coronaEvent = new HashMap<>();
-            coronaEvent.put(EVENT_PHASE_KEY, PHASE_INFO);
-            coronaEvent.put(EVENT_TYPE_KEY, zoneInfo.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
-            coronaEvent.put(EVENT_DATA_KEY, data.toString());
-            dispatchLuaEvent(coronaEvent);
+            // get number of arguments
+            int nargs = luaState.getTop();
+            if (nargs != 1) {
+                logMsg(PluginLog.ERROR, SIGNATURE, "Expected 1 argument, got " + nargs);
+                return 0;
+            }
 
-            return 0;
+            long rewardId;
+            if (luaState.type(1) == LuaType.NUMBER) {
+                // a fractional number is no reward id, truncating it would acknowledge another reward
+                double number = luaState.toNumber(1);
+                rewardId = (long) number;
+                if (rewardId != number) {
+                    logMsg(PluginLog.ERROR, SIGNATURE, "reward id doesn't exist", number);
+                    return 0;
+                }
+            } else {
+                logMsg(PluginLog.ERROR, SIGNATURE, "rewardId (number) expected, got " + luaState.typeName(1));
+                return 0;
+            }
+
+            RewardLedger ledger = rewardLedger;
+            if (ledger == null) {
+                logMsg(PluginLog.WARNING, SIGNATURE, "the rewardLedger option is not enabled");
+                return 0;
+            }
+
+            luaState.pushBoolean(ledger.acknowledge(rewardId));
+            return 1;
+        }
+    }
+
+    // [Lua] dumpLog()
+    @SuppressWarnings("unused")
+    private class DumpLog implements NamedJavaFunction {
+        private static final String SIGNATURE = "adcolony.dumpLog()";
+
+        @Override
+        public String getName() {
+            return "dumpLog";
+        }
+
+        @Override
+        public int invoke(LuaState luaState) {
+            // works without init() so it can be used after a failed initialization
+
+            // get number of arguments
+            int nargs = luaState.getTop();
+            if (nargs != 0) {
+                logMsg(PluginLog.ERROR, SIGNATURE, "Expected no arguments, got " + nargs);
+                return 0;
+            }
+
+            // recent log entries, oldest first
+            PluginLog.Entry[] entries = pluginLog.snapshot();
+            luaState.newTable(entries.length, 0);
+            for (int i = 0; i < entries.length; i++) {
+                PluginLog.Entry entry = entries[i];
+                luaState.newTable(0, 4);
+                luaState.pushNumber(entry.time);
+                luaState.setField(-2, "timeMs");
+                luaState.pushString(PluginLog.LEVEL_NAMES[entry.level]);
+                luaState.setField(-2, "level");
+                luaState.pushString(entry.source);
+                luaState.setField(-2, "source");
+                luaState.pushString(entry.message);
+                luaState.setField(-2, "message");
+                luaState.rawSet(-2, i + 1);
+            }
+
+            return 1;
         }
     }
 
@@ -877,28 +2164,33 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
     // -------------------------------------------------------------------
 
     private class CoronaAdColonyInterstitialListener extends AdColonyInterstitialListener {
-        private String zoneName;
+        private final ZoneStatusInfo zoneStatus;
+        private final String zoneName;
+
+        // elapsedRealtime() timestamps for latency stats (only touched on the UI thread)
+        long requestTime;
+        long showTime;
+        long displayedTime;
 
-        CoronaAdColonyInterstitialListener(String zoneName) {
-            this.zoneName = zoneName;
+        CoronaAdColonyInterstitialListener(ZoneStatusInfo zoneStatus) {
+            this.zoneStatus = zoneStatus;
+            this.zoneName = zoneStatus.zoneName;
         }
 
         @Override
         public void onClicked(AdColonyInterstitial ad) {
-            AdColonyZone zoneInfo = AdColony.getZone(ad.getZoneID());
+            zoneStatus.stats.increment(ZoneStats.CLICKS);
+            logMsg(PluginLog.DEBUG, "onClicked", "ad clicked", zoneName);
+
             // create data
-            JSONObject data = new JSONObject();
-            try {
-                data.put(DATA_ZONE_NAME, zoneName);
-            } catch (Exception e) {
-                System.err.println();
-            }
+            Map<String, Object> data = new HashMap<>();
+            data.put(DATA_ZONE_NAME, zoneName);
 
             // send Corona Lua event
             Map<String, Object> coronaEvent = new HashMap<>();
             coronaEvent.put(EVENT_PHASE_KEY, PHASE_CLICKED);
-            coronaEvent.put(EVENT_TYPE_KEY, zoneInfo.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
-            coronaEvent.put(EVENT_DATA_KEY, data.toString());
+            coronaEvent.put(EVENT_TYPE_KEY, zoneStatus.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
+            coronaEvent.put(EVENT_DATA_KEY, data);
             dispatchLuaEvent(coronaEvent);
 
             super.onClicked(ad);
@@ -906,79 +2198,65 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
 
         @Override
         public void onClosed(AdColonyInterstitial ad) {
-            AdColonyZone zoneInfo = AdColony.getZone(ad.getZoneID());
-            // create data
-            JSONObject data = new JSONObject();
-            try {
-                data.put(DATA_ZONE_NAME, zoneName);
-            } catch (Exception e) {
-                System.err.println();
+            if (displayedTime > 0) {
+                zoneStatus.stats.displayedToClosed.record(SystemClock.elapsedRealtime() - displayedTime);
+            }
+            zoneStatus.showFinished();
+            logMsg(PluginLog.DEBUG, "onClosed", "ad closed", zoneName);
+
+            // get the next ad ready in time for the next show
+            if (zoneRegistry.isRegistered(zoneStatus)) {
+                schedulePrefetch(zoneStatus);
             }
 
+            // create data
+            Map<String, Object> data = new HashMap<>();
+            data.put(DATA_ZONE_NAME, zoneName);
+
             // send Corona Lua event
             Map<String, Object> coronaEvent = new HashMap<>();
             coronaEvent.put(EVENT_PHASE_KEY, PHASE_CLOSED);
-            coronaEvent.put(EVENT_TYPE_KEY, zoneInfo.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
-            coronaEvent.put(EVENT_DATA_KEY, data.toString());
+            coronaEvent.put(EVENT_TYPE_KEY, zoneStatus.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
+            coronaEvent.put(EVENT_DATA_KEY, data);
             dispatchLuaEvent(coronaEvent);
             super.onClosed(ad);
         }
 
         @Override
         public void onExpiring(AdColonyInterstitial ad) {
-            ZoneStatusInfo zoneStatus = (ZoneStatusInfo) ((HashMap) adcolonyObjects.get(ZONESTATUS_KEY)).get(ad.getZoneID());
-
-            if (zoneStatus != null) {
-
-                // remove the ad
-                zoneStatus.adObject = null;
-                zoneStatus.loaded = false;
-            }
-            AdColonyZone zoneInfo = AdColony.getZone(ad.getZoneID());
-
-            // create data
-            JSONObject data = new JSONObject();
-            try {
-                data.put(DATA_ZONE_NAME, zoneName);
-            } catch (Exception e) {
-                System.err.println();
+            zoneStatus.stats.increment(ZoneStats.EXPIRATIONS);
+            logMsg(PluginLog.DEBUG, "onExpiring", "ad expired", zoneName);
+
+            if (zoneRegistry.isRegistered(zoneStatus)) {
+                // remove the ad, prefetch replaces the immediate autoReload with one timed for the next show
+                zoneStatus.expireAd(ad);
+                if (prefetch) {
+                    schedulePrefetch(zoneStatus);
+                } else {
+                    scheduleReload(zoneStatus, false);
+                }
             }
 
-            // send Corona Lua event
-            Map<String, Object> coronaEvent = new HashMap<>();
-            coronaEvent.put(EVENT_PHASE_KEY, PHASE_EXPIRED);
-            coronaEvent.put(EVENT_TYPE_KEY, zoneInfo.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
-            coronaEvent.put(EVENT_DATA_KEY, data.toString());
-            dispatchLuaEvent(coronaEvent);
+            sendExpiredEvent(zoneStatus, null);
 
             super.onExpiring(ad);
         }
 
-        public void coronaOnOpened(AdColonyInterstitial ad) {
-            if (!adcolonyObjects.isEmpty()) {
-                ZoneStatusInfo zoneStatus = (ZoneStatusInfo) ((HashMap) adcolonyObjects.get(ZONESTATUS_KEY)).get(ad.getZoneID());
-
-                if (zoneStatus != null) {
-                    // flag ad as used
-                    zoneStatus.loaded = false;
-                }
-            }
-
-            AdColonyZone zoneInfo = AdColony.getZone(ad.getZoneID());
+        public void coronaOnOpened(AdColonyInterstitial ad, ZoneStatusInfo requestedZone) {
+            // the ad has already been taken out of the zone's pool by show()
 
-            // create data
-            JSONObject data = new JSONObject();
-            try {
-                data.put(DATA_ZONE_NAME, zoneName);
-            } catch (Exception e) {
-                System.err.println();
+            // create data (says which zone show() asked for when a fallback zone serves the ad)
+            Map<String, Object> data = new HashMap<>();
+            data.put(DATA_ZONE_NAME, zoneName);
+            if (requestedZone != zoneStatus) {
+                data.put(DATA_REQUESTED_ZONE_NAME, requestedZone.zoneName);
             }
 
             // send Corona Lua event
             Map<String, Object> coronaEvent = new HashMap<>();
             coronaEvent.put(EVENT_PHASE_KEY, PHASE_DISPLAYED);
-            coronaEvent.put(EVENT_TYPE_KEY, zoneInfo.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
-            coronaEvent.put(EVENT_DATA_KEY, data.toString());
+            coronaEvent.put(EVENT_TYPE_KEY, zoneStatus.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
+            coronaEvent.put(EVENT_DATA_KEY, data);
             dispatchLuaEvent(coronaEvent);
 
             super.onOpened(ad);
@@ -986,43 +2264,69 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
 
         @Override
         public void onOpened(AdColonyInterstitial ad) {
-            // NOP
-            // see coronaOnOpened()
+            // No Lua event here, see coronaOnOpened()
             // Since the ad activity takes control before this event is processed by Lua, the plugin will
             // programmitically send coronaOnOpened() in show() instead
+            displayedTime = SystemClock.elapsedRealtime();
+            if (showTime > 0) {
+                zoneStatus.stats.showToDisplayed.record(displayedTime - showTime);
+            }
         }
 
         @Override
         public void onRequestFilled(AdColonyInterstitial ad) {
-            if (!adcolonyObjects.isEmpty()) {
-                String zoneID = ad.getZoneID();
-                if (zoneID != null) {
-                    HashMap zoneMap = (HashMap) adcolonyObjects.get(ZONESTATUS_KEY);
-                    if (!zoneMap.isEmpty()) {
-                        ZoneStatusInfo zoneStatus = (ZoneStatusInfo) zoneMap.get(zoneID);
-                        if (zoneStatus != null) {
-
-                            // save the ad
-                            zoneStatus.adObject = ad;
-                            zoneStatus.loaded = true;
-                        }
-                    }
-                    AdColonyZone zoneInfo = AdColony.getZone(ad.getZoneID());
+            // ignore fills for a configuration that has been released
+            if (!zoneRegistry.isRegistered(zoneStatus)) {
+                ad.setListener(null);
+                return;
+            }
 
-                    // create data
-                    JSONObject data = new JSONObject();
-                    try {
-                        data.put(DATA_ZONE_NAME, zoneName);
-                    } catch (Exception e) {
-                        System.err.println();
-                    }
+            long fillLatency = SystemClock.elapsedRealtime() - requestTime;
+            zoneStatus.stats.increment(ZoneStats.FILLS);
+            zoneStatus.stats.requestToFilled.record(fillLatency);
+            zoneStatus.recordFillLatency(fillLatency);
+            logMsg(PluginLog.DEBUG, "onRequestFilled", "ad loaded", zoneName);
+
+            zoneStatus.requestFinished();
+            zoneStatus.resetReloadRetries();
+
+            // a showOrLoad() waiting for this ad shows it right away, so it never counts against maxHeldAds
+            boolean showNow = zoneStatus.takeShowOnFill(SystemClock.elapsedRealtime());
+
+            // stay within maxHeldAds, giving up the new ad if every held one matters more
+            if (!showNow && !makeRoomForAd(zoneStatus)) {
+                ad.setListener(null);
+                ad.destroy();
+                zoneStatus.stats.increment(ZoneStats.EVICTIONS);
+                logMsg(PluginLog.DEBUG, "maxHeldAds", "new ad discarded", zoneName);
+                sendFailedEvent(zoneStatus, RESPONSE_HELDADLIMIT);
+                return;
+            }
 
-                    // send Corona Lua event
-                    Map<String, Object> coronaEvent = new HashMap<>();
-                    coronaEvent.put(EVENT_PHASE_KEY, PHASE_LOADED);
-                    coronaEvent.put(EVENT_TYPE_KEY, zoneInfo.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
-                    coronaEvent.put(EVENT_DATA_KEY, data.toString());
-                    dispatchLuaEvent(coronaEvent);
+            // save the ad, dropping the oldest one if the pool is full
+            AdColonyInterstitial evicted = zoneStatus.putAd(ad);
+            if (evicted != null) {
+                evicted.setListener(null);
+                evicted.destroy();
+            }
+            scheduleAdAgeCheck(zoneStatus);
+
+            // keep filling multi-slot pools in the background
+            if (!showNow && zoneStatus.needsRefill() && hasRoomForAd()) {
+                requestInterstitial(zoneStatus);
+            }
+
+            // refresh cached zone settings
+            zoneStatus.updateMetadata(sdk.getZone(zoneStatus.zoneId));
+
+            sendLoadedEvent(zoneStatus);
+
+            // the ad a showOrLoad() has been waiting for (show() also tops up the pool)
+            if (showNow) {
+                AdColonyInterstitial interstitial = zoneStatus.takeAd();
+                releaseOverdueAds(zoneStatus);
+                if (interstitial != null) {
+                    showInterstitial(zoneStatus, interstitial);
                 }
             }
         }
@@ -1030,33 +2334,22 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
         @Override
         public void onRequestNotFilled(AdColonyZone zone) {
             if (zone != null) {
-                String zoneID = zone.getZoneID();
-                HashMap zoneStatusHashMap = (HashMap) adcolonyObjects.get(ZONESTATUS_KEY);
-                if (zoneStatusHashMap != null && !zoneStatusHashMap.isEmpty()) {
-                    ZoneStatusInfo zoneStatus = (ZoneStatusInfo) zoneStatusHashMap.get(zoneID);
-                    if (zoneStatus != null) {
-                        // remove the ad
-                        zoneStatus.adObject = null;
-                        zoneStatus.loaded = false;
+                if (zoneRegistry.isRegistered(zoneStatus)) {
+                    zoneStatus.stats.increment(ZoneStats.NO_FILLS);
+                    zoneStatus.updateMetadata(zone);
+                    logMsg(PluginLog.DEBUG, "onRequestNotFilled", "no fill", zoneName);
+
+                    // ads already in the pool stay valid
+                    zoneStatus.requestFinished();
+                    scheduleReload(zoneStatus, true);
+
+                    // this failure answers a waiting showOrLoad(), unless autoReload may still fill the zone in time
+                    if (!autoReload && !zoneStatus.isRequestPending()) {
+                        zoneStatus.cancelShowOnFill(0);
                     }
                 }
 
-                // create data
-                JSONObject data = new JSONObject();
-                try {
-                    data.put(DATA_ZONE_NAME, zoneName);
-                } catch (Exception e) {
-                    System.err.println();
-                }
-
-                // send Corona Lua event
-                Map<String, Object> coronaEvent = new HashMap<>();
-                coronaEvent.put(EVENT_PHASE_KEY, PHASE_FAILED);
-                coronaEvent.put(EVENT_TYPE_KEY, zone.isRewarded() ? TYPE_REWARDEDVIDEO : TYPE_INTERSTITIAL);
-                coronaEvent.put(CoronaLuaEvent.ISERROR_KEY, true);
-                coronaEvent.put(CoronaLuaEvent.RESPONSE_KEY, RESPONSE_LOADFAILED);
-                coronaEvent.put(EVENT_DATA_KEY, data.toString());
-                dispatchLuaEvent(coronaEvent);
+                sendFailedEvent(zoneStatus, RESPONSE_LOADFAILED);
             }
             super.onRequestNotFilled(zone);
         }
@@ -1068,24 +2361,39 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener {
             Map<String, Object> coronaEvent = new HashMap<>();
             coronaEvent.put(EVENT_PHASE_KEY, PHASE_REWARD);
             coronaEvent.put(EVENT_TYPE_KEY, TYPE_REWARDEDVIDEO);
+            logMsg(PluginLog.DEBUG, "onReward", adColonyReward.success() ? "reward granted" : "reward failed", adColonyReward.getZoneID());
             if (adColonyReward.success()) {
-                if (!adcolonyObjects.isEmpty()) {
-                    ZoneStatusInfo zoneStatus = (ZoneStatusInfo) ((HashMap) adcolonyObjects.get(ZONESTATUS_KEY)).get(adColonyReward.getZoneID());
-
-                    if (zoneStatus != null) {
-                        // create data
-                        JSONObject data = new JSONObject();
-                        try {
-                            data.put(DATA_ZONE_NAME, zoneStatus.zoneName);
-                            data.put(DATA_CURRENCY_NAME, adColonyReward.getRewardName());
-                            data.put(DATA_REWARD, adColonyReward.getRewardAmount());
-                        } catch (Exception e) {
-                            System.err.println();
-                        }
+                ZoneStatusInfo zoneStatus = zoneRegistry.getById(adColonyReward.getZoneID());
 
-                        // send Corona Lua event
-                        coronaEvent.put(EVENT_DATA_KEY, data.toString());
+                if (zoneStatus != null) {
+                    zoneStatus.stats.increment(ZoneStats.REWARDS);
+
+                    // views until the next reward have changed
+                    zoneStatus.updateMetadata(sdk.getZone(zoneStatus.zoneId));
+
+                    // create data
+                    Map<String, Object> data = new HashMap<>();
+                    data.put(DATA_ZONE_NAME, zoneStatus.zoneName);
+                    data.put(DATA_CURRENCY_NAME, adColonyReward.getRewardName());
+                    data.put(DATA_REWARD, adColonyReward.getRewardAmount());
+
+                    // journal the reward before Lua sees it, so it can be replayed if it never gets there
+                    RewardLedger ledger = rewardLedger;
+                    if (ledger != null) {
+                        long rewardId = ledger.append(zoneStatus.zoneName, adColonyReward.getRewardName(), adColonyReward.getRewardAmount());
+                        if ((rewardId > 0) && rewardsDeferred) {
+                            // no runtime to send it to, the next init() replays it
+                            logMsg(PluginLog.DEBUG, "onReward", "reward journaled for the next init()", zoneStatus.zoneName);
+                            return;
+                        } else if (rewardId > 0) {
+                            data.put(DATA_REWARD_ID, rewardId);
+                        } else {
+                            logMsg(PluginLog.ERROR, "onReward", "could not journal reward", zoneStatus.zoneName);
+                        }
                     }
+
+                    // send Corona Lua event
+                    coronaEvent.put(EVENT_DATA_KEY, data);
                 }
             }
             dispatchLuaEvent(coronaEvent);
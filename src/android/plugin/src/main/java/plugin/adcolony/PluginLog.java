@@ -0,0 +1,138 @@
+//
+// PluginLog.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Plugin log: a fixed-size ring buffer of recent entries plus level-gated console output.
+ * <p/>
+ * Entries up to the record level (info, or the console level if that is higher) are recorded in the ring buffer,
+ * so adcolony.dumpLog() can show what happened before a problem. Recording stores references only: callers pass
+ * constant messages and put variable parts (zone names, exceptions, ...) in the detail argument, which is only
+ * turned into text when an entry is printed or dumped. Entries below the console level are never formatted, and
+ * entries below the record level return before taking the lock or reading the clock.
+ */
+final class PluginLog {
+    // levels, most severe first
+    static final int NONE = 0;
+    static final int ERROR = 1;
+    static final int WARNING = 2;
+    static final int INFO = 3;
+    static final int DEBUG = 4;
+
+    static final String[] LEVEL_NAMES = {"none", "error", "warning", "info", "debug"};
+
+    private static final String CORONA_TAG = "Corona";
+    private static final String[] LEVEL_PREFIXES = {"", "ERROR: ", "WARNING: ", "", ""};
+
+    /**
+     * A copy of one ring buffer entry, made by {@link #snapshot()}.
+     */
+    static final class Entry {
+        final long time;
+        final int level;
+        final String source;
+        final String message;
+
+        Entry(long time, int level, String source, String message) {
+            this.time = time;
+            this.level = level;
+            this.source = source;
+            this.message = message;
+        }
+    }
+
+    private final int capacity;
+    private final long[] times;
+    private final int[] levels;
+    private final String[] sources;
+    private final String[] messages;
+    private final Object[] details;
+    private long written = 0; // total entries recorded, guarded by this
+
+    private volatile int consoleLevel = INFO;
+    private volatile int recordLevel = INFO; // never below consoleLevel
+
+    PluginLog(int capacity) {
+        this.capacity = capacity;
+        times = new long[capacity];
+        levels = new int[capacity];
+        sources = new String[capacity];
+        messages = new String[capacity];
+        details = new Object[capacity];
+    }
+
+    // returns the level with the given name, or -1
+    static int parseLevel(String name) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            if (LEVEL_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void setConsoleLevel(int level) {
+        recordLevel = Math.max(level, INFO);
+        consoleLevel = level;
+    }
+
+    boolean isConsoleEnabled(int level) {
+        return level <= consoleLevel;
+    }
+
+    void log(int level, String source, String message) {
+        log(level, source, message, null);
+    }
+
+    // records an entry and prints it if the console level allows (detail may be null)
+    void log(int level, String source, String message, Object detail) {
+        if (level > recordLevel) {
+            return;
+        }
+
+        synchronized (this) {
+            int slot = (int) (written % capacity);
+            times[slot] = SystemClock.elapsedRealtime();
+            levels[slot] = level;
+            sources[slot] = source;
+            messages[slot] = message;
+            details[slot] = detail;
+            written++;
+        }
+
+        if (level <= consoleLevel) {
+            String text = LEVEL_PREFIXES[level] + (source.isEmpty() ? "" : source + ", ") + format(message, detail);
+            if (detail instanceof Throwable) {
+                Log.i(CORONA_TAG, text, (Throwable) detail);
+            } else {
+                Log.i(CORONA_TAG, text);
+            }
+        }
+    }
+
+    // copies the buffered entries, oldest first
+    Entry[] snapshot() {
+        synchronized (this) {
+            int count = (int) Math.min(written, capacity);
+            Entry[] entries = new Entry[count];
+            for (int i = 0; i < count; i++) {
+                int slot = (int) ((written - count + i) % capacity);
+                entries[i] = new Entry(times[slot], levels[slot], sources[slot], format(messages[slot], details[slot]));
+            }
+            return entries;
+        }
+    }
+
+    private static String format(String message, Object detail) {
+        return (detail != null) ? message + ": " + detail : message;
+    }
+}
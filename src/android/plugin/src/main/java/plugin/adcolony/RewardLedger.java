@@ -0,0 +1,305 @@
+//
+// RewardLedger.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Append-only journal of granted rewards, kept until the app acknowledges them.
+ * <p/>
+ * Each reward is appended as one line ("R id zoneName currencyName amount", tab separated) before it is sent to
+ * Lua, and each acknowledgement as "A id". Appends go straight to the file (one write() into the OS page cache, so
+ * they survive the process being killed), while fsync() runs on a background thread and covers every append made
+ * since the previous one, so a burst of rewards costs a single sync. Once acknowledgements make up most of the
+ * file, it is rewritten with only the pending rewards, after an "N nextId" line so reward ids are never reused.
+ * A last line torn by a crash is cut off when the journal is opened.
+ * <p/>
+ * The pending rewards read back by {@link #open} are the ones the app has to be given again.
+ */
+final class RewardLedger {
+    static final String FILE_NAME = "plugin_adcolony_rewards.log";
+
+    // compact once the file holds this many lines and fewer than half of them are pending rewards
+    private static final int COMPACT_MIN_LINES = 64;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String RECORD_REWARD = "R";
+    private static final String RECORD_ACK = "A";
+    private static final String RECORD_NEXT_ID = "N";
+
+    /**
+     * A reward that has not been acknowledged yet.
+     */
+    static final class Reward {
+        final long id;
+        final String zoneName;
+        final String currencyName;
+        final int amount;
+
+        Reward(long id, String zoneName, String currencyName, int amount) {
+            this.id = id;
+            this.zoneName = zoneName;
+            this.currencyName = currencyName;
+            this.amount = amount;
+        }
+    }
+
+    private final File file;
+    private final LinkedHashMap<Long, Reward> pending = new LinkedHashMap<>();
+    private final ExecutorService syncThread;
+    private FileOutputStream out;
+    private long nextId = 1;
+    private int lines = 0;
+    private boolean syncScheduled = false;
+    private boolean compactScheduled = false;
+
+    private RewardLedger(File file) {
+        this.file = file;
+        syncThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AdColonyRewardLedger");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Opens the journal in the given directory, reading back the rewards that are still pending.
+     */
+    static RewardLedger open(File dir) throws IOException {
+        RewardLedger ledger = new RewardLedger(new File(dir, FILE_NAME));
+        ledger.read();
+        ledger.out = new FileOutputStream(ledger.file, true);
+        return ledger;
+    }
+
+    /**
+     * Records a reward and returns its id. Returns -1 if it could not be written.
+     */
+    synchronized long append(String zoneName, String currencyName, int amount) {
+        long id = nextId;
+        String line = RECORD_REWARD + '\t' + id + '\t' + clean(zoneName) + '\t' + clean(currencyName) + '\t' + amount + '\n';
+        if (!write(line)) {
+            return -1;
+        }
+
+        nextId++;
+        pending.put(id, new Reward(id, zoneName, currencyName, amount));
+        return id;
+    }
+
+    /**
+     * Marks a reward as given to the player. Returns false if it was not pending.
+     */
+    synchronized boolean acknowledge(long id) {
+        if (!pending.containsKey(id) || !write(RECORD_ACK + '\t' + id + '\n')) {
+            return false;
+        }
+
+        pending.remove(id);
+        if ((lines >= COMPACT_MIN_LINES) && (pending.size() * 2 < lines) && !compactScheduled) {
+            compactScheduled = true;
+            syncThread.execute(compactTask);
+        }
+        return true;
+    }
+
+    // the rewards waiting for an acknowledgement, oldest first
+    synchronized List<Reward> getPending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Syncs and closes the journal.
+     */
+    void close() {
+        synchronized (this) {
+            try {
+                if (out != null) {
+                    out.getFD().sync();
+                    out.close();
+                }
+            } catch (IOException ignored) {
+            }
+            out = null;
+        }
+        syncThread.shutdown();
+    }
+
+    private void read() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < bytes.length) {
+                int count = in.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+        } finally {
+            in.close();
+        }
+
+        // only complete lines count, and new records must not be glued onto a torn one
+        int end = bytes.length;
+        while ((end > 0) && (bytes[end - 1] != '\n')) {
+            end--;
+        }
+        if (end < bytes.length) {
+            RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+            try {
+                truncated.setLength(end);
+            } finally {
+                truncated.close();
+            }
+        }
+
+        for (String line : new String(bytes, 0, end, UTF8).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            lines++;
+            String[] fields = line.split("\t", -1);
+            try {
+                long id = Long.parseLong(fields[1]);
+                if (fields[0].equals(RECORD_REWARD) && (fields.length == 5)) {
+                    pending.put(id, new Reward(id, fields[2], fields[3], Integer.parseInt(fields[4])));
+                    nextId = Math.max(nextId, id + 1);
+                } else if (fields[0].equals(RECORD_ACK) && (fields.length == 2)) {
+                    pending.remove(id);
+                } else if (fields[0].equals(RECORD_NEXT_ID) && (fields.length == 2)) {
+                    nextId = Math.max(nextId, id);
+                }
+            } catch (RuntimeException ignored) {
+                // not a record this version writes
+            }
+        }
+    }
+
+    // append a line and schedule a sync, returns false on failure (guarded by this)
+    private boolean write(String line) {
+        if (out == null) {
+            return false;
+        }
+
+        try {
+            out.write(line.getBytes(UTF8));
+        } catch (IOException e) {
+            return false;
+        }
+        lines++;
+
+        if (!syncScheduled) {
+            syncScheduled = true;
+            syncThread.execute(syncTask);
+        }
+        return true;
+    }
+
+    // syncs every append made before it runs, without blocking new ones
+    private final Runnable syncTask = new Runnable() {
+        @Override
+        public void run() {
+            FileDescriptor fd;
+            synchronized (RewardLedger.this) {
+                syncScheduled = false;
+                try {
+                    fd = (out != null) ? out.getFD() : null;
+                } catch (IOException e) {
+                    fd = null;
+                }
+            }
+
+            try {
+                if (fd != null) {
+                    fd.sync();
+                }
+            } catch (IOException ignored) {
+                // closed by a compaction, which synced the new file
+            }
+        }
+    };
+
+    private final Runnable compactTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (RewardLedger.this) {
+                compactScheduled = false;
+                if (out != null) {
+                    compact();
+                }
+            }
+        }
+    };
+
+    // rewrite the journal with only the pending rewards (guarded by this)
+    private void compact() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            // the old stream is closed whatever happens, it is reopened below
+            try {
+                FileOutputStream tmpOut = new FileOutputStream(tmp);
+                try {
+                    StringBuilder sb = new StringBuilder();
+                    sb.append(RECORD_NEXT_ID).append('\t').append(nextId).append('\n');
+                    for (Reward reward : pending.values()) {
+                        sb.append(RECORD_REWARD).append('\t').append(reward.id).append('\t').append(clean(reward.zoneName))
+                                .append('\t').append(clean(reward.currencyName)).append('\t').append(reward.amount).append('\n');
+                    }
+                    tmpOut.write(sb.toString().getBytes(UTF8));
+                    tmpOut.getFD().sync();
+                } finally {
+                    tmpOut.close();
+                }
+
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("rename failed");
+            }
+            lines = pending.size() + 1;
+        } catch (IOException e) {
+            // keep appending to the old file, acknowledgements in it are still valid
+            tmp.delete();
+        }
+
+        try {
+            out = new FileOutputStream(file, true);
+        } catch (IOException e) {
+            out = null;
+        }
+    }
+
+    // names are written tab separated, one record per line
+    private static String clean(String value) {
+        return (value == null) ? "" : value.replace('\t', ' ').replace('\n', ' ');
+    }
+}
@@ -0,0 +1,222 @@
+//
+// ZoneRegistry.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the plugin configuration and the {@link ZoneStatusInfo} of every configured zone.
+ * <p/>
+ * Zones are registered on the Lua thread by init() and looked up from both the Lua thread (API calls)
+ * and the UI thread (SDK callbacks). Lookups never lock.
+ */
+final class ZoneRegistry {
+    private final ConcurrentHashMap<String, ZoneStatusInfo> zonesByName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ZoneStatusInfo> zonesById = new ConcurrentHashMap<>();
+    private volatile String appId = null;
+    private volatile boolean sdkReady = false;
+    private volatile boolean retained = false; // zones kept from a runtime that has exited, until the next init()
+    private volatile ZoneStatusInfo[] zoneList = new ZoneStatusInfo[0]; // configured zones in a fixed order
+
+    // replaces the current configuration
+    void configure(String appId, Collection<ZoneStatusInfo> zones) {
+        clear();
+        for (ZoneStatusInfo zone : zones) {
+            zonesByName.put(zone.zoneName, zone);
+            zonesById.put(zone.zoneId, zone);
+        }
+        zoneList = zones.toArray(new ZoneStatusInfo[0]);
+        this.appId = appId;
+    }
+
+    // keeps the zones and their ads for the next init(), which may reuse them with {@link #reuse}
+    void retain() {
+        sdkReady = false;
+        retained = true;
+    }
+
+    boolean isRetained() {
+        return retained;
+    }
+
+    // true if the retained configuration has the same app id and zones, so its ads are still valid
+    boolean matches(String appId, Collection<ZoneStatusInfo> zones) {
+        if (!retained || !appId.equals(this.appId) || (zones.size() != zoneList.length)) {
+            return false;
+        }
+
+        for (ZoneStatusInfo zone : zones) {
+            ZoneStatusInfo current = zonesByName.get(zone.zoneName);
+            if ((current == null) || !current.zoneId.equals(zone.zoneId) || (current.poolSize != zone.poolSize) || (current.priority != zone.priority)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // takes over the retained configuration instead of configuring a new one
+    void reuse() {
+        retained = false;
+    }
+
+    ZoneStatusInfo getByName(String zoneName) {
+        return (zoneName != null) ? zonesByName.get(zoneName) : null;
+    }
+
+    ZoneStatusInfo getById(String zoneId) {
+        return (zoneId != null) ? zonesById.get(zoneId) : null;
+    }
+
+    // handles are 1-based positions in the zone list, stable for as long as the configuration is
+    ZoneStatusInfo getByHandle(int handle) {
+        ZoneStatusInfo[] list = zoneList;
+        return ((handle >= 1) && (handle <= list.length)) ? list[handle - 1] : null;
+    }
+
+    // the zone's handle for getByHandle(), 0 if the zone name is not configured
+    int getHandle(String zoneName) {
+        ZoneStatusInfo[] list = zoneList;
+        for (int i = 0; i < list.length; i++) {
+            if (list[i].zoneName.equals(zoneName)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    // false for zones left over from a previous configuration
+    boolean isRegistered(ZoneStatusInfo zone) {
+        return zonesById.get(zone.zoneId) == zone;
+    }
+
+    Collection<ZoneStatusInfo> getZones() {
+        return zonesByName.values();
+    }
+
+    String[] getZoneIds() {
+        return zonesById.keySet().toArray(new String[0]);
+    }
+
+    String getAppId() {
+        return appId;
+    }
+
+    // configured zones in a fixed order, for iterating without allocation (do not modify)
+    ZoneStatusInfo[] getZoneList() {
+        return zoneList;
+    }
+
+    // total ads held by all zones
+    int countHeldAds() {
+        int held = 0;
+        for (ZoneStatusInfo zone : zoneList) {
+            held += zone.getHeldAds();
+        }
+        return held;
+    }
+
+    // total requests sent by all zones and not answered yet
+    int countPendingRequests() {
+        int pending = 0;
+        for (ZoneStatusInfo zone : zoneList) {
+            pending += zone.getPendingRequests();
+        }
+        return pending;
+    }
+
+    // the zone holding an ad that matters least: lowest priority, then least recently shown (null if no ads are held)
+    ZoneStatusInfo findEvictionCandidate() {
+        ZoneStatusInfo candidate = null;
+        for (ZoneStatusInfo zone : zoneList) {
+            if ((zone.getHeldAds() > 0) && ((candidate == null) || (compareImportance(zone, candidate) < 0))) {
+                candidate = zone;
+            }
+        }
+        return candidate;
+    }
+
+    // orders zones by how much their ads are worth keeping
+    static int compareImportance(ZoneStatusInfo a, ZoneStatusInfo b) {
+        if (a.priority != b.priority) {
+            return (a.priority < b.priority) ? -1 : 1;
+        }
+        long aShown = a.getLastShowTime();
+        long bShown = b.getLastShowTime();
+        return (aShown < bShown) ? -1 : ((aShown == bShown) ? 0 : 1);
+    }
+
+    // a copy of the zones ordered by priority, highest first (ties keep their declared order)
+    static ZoneStatusInfo[] rankByPriority(ZoneStatusInfo[] zones) {
+        ZoneStatusInfo[] ranked = zones.clone();
+        for (int i = 1; i < ranked.length; i++) {
+            ZoneStatusInfo zone = ranked[i];
+            int j = i - 1;
+            while ((j >= 0) && (ranked[j].priority < zone.priority)) {
+                ranked[j + 1] = ranked[j];
+                j--;
+            }
+            ranked[j + 1] = zone;
+        }
+        return ranked;
+    }
+
+    // a copy of the zones ordered by how easily they are refilled: higher fill rate first, then lower fill latency
+    static ZoneStatusInfo[] rankByFillPerformance(ZoneStatusInfo[] zones) {
+        int count = zones.length;
+        ZoneStatusInfo[] ranked = zones.clone();
+
+        // snapshot the figures, fills on the UI thread must not change them mid-sort
+        double[] rates = new double[count];
+        double[] latencies = new double[count];
+        for (int i = 0; i < count; i++) {
+            rates[i] = ranked[i].stats.getFillRate();
+            latencies[i] = ranked[i].getFillLatency();
+        }
+
+        // insertion sort: chains are short, and ties keep their declared order
+        for (int i = 1; i < count; i++) {
+            ZoneStatusInfo zone = ranked[i];
+            double rate = rates[i];
+            double latency = latencies[i];
+            int j = i - 1;
+            while ((j >= 0) && ((rates[j] < rate) || ((rates[j] == rate) && (latencies[j] > latency)))) {
+                ranked[j + 1] = ranked[j];
+                rates[j + 1] = rates[j];
+                latencies[j + 1] = latencies[j];
+                j--;
+            }
+            ranked[j + 1] = zone;
+            rates[j + 1] = rate;
+            latencies[j + 1] = latency;
+        }
+        return ranked;
+    }
+
+    boolean isSDKReady() {
+        return sdkReady;
+    }
+
+    void setSDKReady(boolean ready) {
+        sdkReady = ready;
+    }
+
+    // drops all zones and the ads they hold
+    void clear() {
+        sdkReady = false;
+        retained = false;
+        appId = null;
+        for (ZoneStatusInfo zone : zonesByName.values()) {
+            zone.releaseAds();
+        }
+        zonesByName.clear();
+        zonesById.clear();
+        zoneList = new ZoneStatusInfo[0];
+    }
+}
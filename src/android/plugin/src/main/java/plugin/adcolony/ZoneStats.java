@@ -0,0 +1,131 @@
+//
+// ZoneStats.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Performance counters and latency histograms of a single zone.
+ * <p/>
+ * Recording is lock-free and doesn't allocate, so it stays on in production builds.
+ * Readers get a best-effort view; values recorded concurrently may or may not be included.
+ */
+final class ZoneStats {
+    // counters
+    static final int REQUESTS = 0;
+    static final int FILLS = 1;
+    static final int NO_FILLS = 2;
+    static final int EXPIRATIONS = 3;
+    static final int SHOWS = 4;
+    static final int CLICKS = 5;
+    static final int REWARDS = 6;
+    static final int LOADS_JOINED = 7;        // load() calls answered by a request already in flight
+    static final int LOADS_ALREADY_READY = 8; // load() calls answered by an ad already held
+    static final int PREFETCHES = 9;          // requests sent by the prefetch option
+    static final int EVICTIONS = 10;          // ads dropped to stay within maxHeldAds
+    static final int MEMORY_RELEASES = 11;    // ads dropped because the system is low on memory
+
+    // names reported to Lua, indexed by counter
+    static final String[] COUNTER_NAMES = {
+            "requests",
+            "fills",
+            "noFills",
+            "expirations",
+            "shows",
+            "clicks",
+            "rewards",
+            "loadsJoined",
+            "loadsAlreadyReady",
+            "prefetches",
+            "evictions",
+            "memoryReleases"
+    };
+
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+
+    final LatencyHistogram requestToFilled = new LatencyHistogram();
+    final LatencyHistogram showToDisplayed = new LatencyHistogram();
+    final LatencyHistogram displayedToClosed = new LatencyHistogram();
+
+    void increment(int counter) {
+        counters.incrementAndGet(counter);
+    }
+
+    long get(int counter) {
+        return counters.get(counter);
+    }
+
+    // fills per request so far (0 before the first request)
+    double getFillRate() {
+        long requests = counters.get(REQUESTS);
+        return (requests > 0) ? ((double) counters.get(FILLS) / requests) : 0;
+    }
+
+    /**
+     * Millisecond latencies in power-of-two buckets: [0, 1), [1, 2), [2, 4), ... with the last bucket open-ended.
+     */
+    static final class LatencyHistogram {
+        static final int BUCKETS = 22; // last bucket starts at ~17 minutes
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong(0);
+        private final AtomicLong sum = new AtomicLong(0);
+        private final AtomicLong max = new AtomicLong(0);
+
+        void record(long latencyMs) {
+            if (latencyMs < 0) {
+                return;
+            }
+
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(latencyMs));
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            sum.addAndGet(latencyMs);
+
+            long currentMax;
+            while (latencyMs > (currentMax = max.get())) {
+                if (max.compareAndSet(currentMax, latencyMs)) {
+                    break;
+                }
+            }
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        long getMax() {
+            return max.get();
+        }
+
+        double getMean() {
+            long n = count.get();
+            return (n > 0) ? ((double) sum.get() / n) : 0;
+        }
+
+        // upper bound of the bucket holding the given quantile (0..1), never above the recorded maximum
+        long getPercentile(double quantile) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(quantile * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(1L << i, max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+}
@@ -0,0 +1,496 @@
+//
+// ZoneStatusInfo.java
+// AdColony Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+
+// @formatter:off
+
+package plugin.adcolony;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.os.SystemClock;
+
+// AdColony SDK imports
+import com.adcolony.sdk.AdColonyInterstitial;
+import com.adcolony.sdk.AdColonyZone;
+
+/**
+ * Runtime state of a single AdColony zone.
+ * <p/>
+ * Written by SDK callbacks on the UI thread and read by API calls on the Lua thread.
+ * Changes to the ad pool are serialized on the zone and published as an immutable {@link State},
+ * so readers such as isLoaded() see a consistent answer without locking or calling into the SDK.
+ */
+final class ZoneStatusInfo {
+    // zone states
+    static final int STATE_EMPTY = 0;   // no ad held, no request pending
+    static final int STATE_LOADING = 1; // no ad held, request pending
+    static final int STATE_READY = 2;   // at least one ad held
+    static final int STATE_SHOWING = 3; // no ad held, an ad is being shown
+    static final int STATE_EXPIRED = 4; // no ad held, the last one expired
+
+    static final ZoneStatusInfo[] NO_ZONES = new ZoneStatusInfo[0];
+
+    // show cadence learning (exponentially weighted moving averages)
+    private static final double CADENCE_WEIGHT = 0.25;                 // weight of the newest sample
+    private static final long MAX_SHOW_INTERVAL_MS = 30 * 60 * 1000;   // longer gaps count as this (sessions, pauses)
+
+    /**
+     * The zone's state word: the state together with the fill time of the ad that show() would use and the time until
+     * which one of the held ads can still be shown.
+     */
+    static final class State {
+        static final State EMPTY = new State(STATE_EMPTY, 0, 0);
+
+        final int state;
+        final long fillTime;       // elapsedRealtime() when the ad was filled, 0 without an ad
+        final long expiryDeadline; // elapsedRealtime() after which no held ad is shown any more, 0 for none
+
+        State(int state, long fillTime, long expiryDeadline) {
+            this.state = state;
+            this.fillTime = fillTime;
+            this.expiryDeadline = expiryDeadline;
+        }
+
+        boolean isReady(long now) {
+            return (state == STATE_READY) && ((expiryDeadline == 0) || (now < expiryDeadline));
+        }
+    }
+
+    // a filled ad with the time it was filled
+    private static final class PooledAd {
+        final AdColonyInterstitial ad;
+        final long fillTime;
+        final long expiryDeadline;
+
+        PooledAd(AdColonyInterstitial ad, long fillTime, long expiryDeadline) {
+            this.ad = ad;
+            this.fillTime = fillTime;
+            this.expiryDeadline = expiryDeadline;
+        }
+
+        boolean isExpired(long now) {
+            return ((expiryDeadline != 0) && (now >= expiryDeadline)) || ad.isExpired();
+        }
+    }
+
+    /**
+     * Immutable copy of the zone's AdColonyZone properties, so events can be built without calling into the SDK.
+     */
+    static final class Metadata {
+        static final Metadata UNKNOWN = new Metadata(false, false, "", 0, 0, 0);
+
+        final boolean valid;           // false until the SDK has returned the zone's settings
+        final boolean rewarded;
+        final String rewardName;
+        final int rewardAmount;
+        final int viewsPerReward;
+        final int viewsUntilReward;
+
+        Metadata(boolean valid, boolean rewarded, String rewardName, int rewardAmount, int viewsPerReward, int viewsUntilReward) {
+            this.valid = valid;
+            this.rewarded = rewarded;
+            this.rewardName = rewardName;
+            this.rewardAmount = rewardAmount;
+            this.viewsPerReward = viewsPerReward;
+            this.viewsUntilReward = viewsUntilReward;
+        }
+    }
+
+    final String zoneName;
+    final String zoneId;
+    final int poolSize;
+    final int priority; // zones with a lower priority give up their ads first when maxHeldAds is reached
+    final ZoneStats stats = new ZoneStats();
+
+    // ad options of the last load(), used for refills
+    volatile boolean prePopup;
+    volatile boolean postPopup;
+
+    // ads older than this are not shown (0: until the SDK expires them)
+    volatile long maxAdAgeMs = 0;
+
+    // zones whose ads show() uses when this one has none, in declared order (set by init() once all zones are known)
+    volatile ZoneStatusInfo[] fallbacks = NO_ZONES;
+
+    private volatile Metadata metadata = Metadata.UNKNOWN;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.EMPTY);
+    private final ConcurrentLinkedQueue<PooledAd> adPool = new ConcurrentLinkedQueue<>(); // filled ads, oldest first
+    private final AtomicInteger heldAds = new AtomicInteger(0);                           // size of adPool
+    private final AtomicInteger pendingRequests = new AtomicInteger(0);                   // requests sent but not answered yet
+    private final AtomicInteger showingAds = new AtomicInteger(0);                        // ads taken by show() and not closed yet
+    private boolean lastAdExpired = false;                                                // guarded by this
+    private final ArrayList<AdColonyInterstitial> overdueAds = new ArrayList<>();         // guarded by this, skipped by takeAd() for maxAdAge
+    private final AtomicInteger reloadRetries = new AtomicInteger(0);                                 // consecutive no-fills handled by autoReload
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean(false);                           // an autoReload request is already queued
+    private final AtomicBoolean releasedForMemory = new AtomicBoolean(false);                         // ads were dropped on memory pressure
+    private final AtomicInteger prefetchGeneration = new AtomicInteger(0);                            // only the latest queued prefetch runs
+
+    // show cadence (guarded by this)
+    private long lastShowTime = 0;        // elapsedRealtime() of the last show()
+    private double showIntervalMs = 0;    // average time between show() calls, 0 until two have been seen
+    private double fillLatencyMs = 0;     // average time from request to fill
+
+    private long showOnFillDeadline = 0;  // guarded by this, elapsedRealtime() until which showOrLoad() waits for a fill (0: none)
+    private long ageCheckTime = 0;        // guarded by this, elapsedRealtime() of the scheduled maxAdAge check (0: none)
+
+    ZoneStatusInfo(String zoneName, String zoneId, int poolSize, int priority) {
+        this.zoneName = zoneName;
+        this.zoneId = zoneId;
+        this.poolSize = poolSize;
+        this.priority = priority;
+    }
+
+    Metadata getMetadata() {
+        return metadata;
+    }
+
+    boolean isRewarded() {
+        return metadata.rewarded;
+    }
+
+    // refreshes the cached zone properties (zone may be null if the SDK doesn't know the zone yet)
+    void updateMetadata(AdColonyZone zone) {
+        if (zone != null) {
+            metadata = new Metadata(
+                    zone.isValid(),
+                    zone.isRewarded(),
+                    zone.getRewardName(),
+                    zone.getRewardAmount(),
+                    zone.getViewsPerReward(),
+                    zone.getRemainingViewsUntilReward()
+            );
+        }
+    }
+
+    // the current state word, safe to read from any thread without locking
+    State getState() {
+        return state.get();
+    }
+
+    // removes and returns the oldest unexpired ad and marks it as showing (see showFinished())
+    // ads past their maxAdAge deadline are set aside for expireOverdueAds(), which releases them on the UI thread
+    synchronized AdColonyInterstitial takeAd() {
+        long now = SystemClock.elapsedRealtime();
+        PooledAd pooled;
+        while ((pooled = adPool.poll()) != null) {
+            heldAds.decrementAndGet();
+            if (!pooled.isExpired(now)) {
+                break;
+            }
+            // ads expired by the SDK are reported by onExpiring()
+            if (!pooled.ad.isExpired()) {
+                overdueAds.add(pooled.ad);
+                lastAdExpired = true;
+            }
+        }
+
+        AdColonyInterstitial ad = null;
+        if (pooled != null) {
+            ad = pooled.ad;
+            showingAds.incrementAndGet();
+        }
+        publishState();
+        return ad;
+    }
+
+    // adds a filled ad to the pool, returns the oldest ad if it had to make room for it
+    synchronized AdColonyInterstitial putAd(AdColonyInterstitial ad) {
+        long now = SystemClock.elapsedRealtime();
+        long maxAge = maxAdAgeMs;
+        adPool.offer(new PooledAd(ad, now, (maxAge > 0) ? now + maxAge : 0));
+        lastAdExpired = false;
+
+        AdColonyInterstitial evicted = null;
+        if (heldAds.incrementAndGet() > poolSize) {
+            PooledAd oldest = adPool.poll();
+            if (oldest != null) {
+                heldAds.decrementAndGet();
+                evicted = oldest.ad;
+            }
+        }
+        publishState();
+        return evicted;
+    }
+
+    // removes and returns the oldest pooled ad to free memory, or null if none is held
+    synchronized AdColonyInterstitial evictAd() {
+        PooledAd oldest = adPool.poll();
+        if (oldest == null) {
+            return null;
+        }
+
+        heldAds.decrementAndGet();
+        lastAdExpired = true;
+        publishState();
+        return oldest.ad;
+    }
+
+    // drops an ad the SDK has expired
+    synchronized void expireAd(AdColonyInterstitial ad) {
+        for (Iterator<PooledAd> it = adPool.iterator(); it.hasNext(); ) {
+            if (it.next().ad == ad) {
+                it.remove();
+                heldAds.decrementAndGet();
+                lastAdExpired = true;
+                break;
+            }
+        }
+        publishState();
+    }
+
+    // true if takeAd() has set aside ads that expireOverdueAds() still has to release
+    synchronized boolean hasOverdueAds() {
+        return !overdueAds.isEmpty();
+    }
+
+    // drops the ads that are past their maxAdAge deadline, returns how many (call on the UI thread)
+    synchronized int expireOverdueAds(long now) {
+        int expired = overdueAds.size();
+        for (AdColonyInterstitial ad : overdueAds) {
+            ad.setListener(null);
+            ad.destroy();
+        }
+        overdueAds.clear();
+
+        for (Iterator<PooledAd> it = adPool.iterator(); it.hasNext(); ) {
+            PooledAd pooled = it.next();
+            if ((pooled.expiryDeadline != 0) && (now >= pooled.expiryDeadline)) {
+                it.remove();
+                heldAds.decrementAndGet();
+                pooled.ad.setListener(null);
+                pooled.ad.destroy();
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            lastAdExpired = true;
+            publishState();
+        }
+        return expired;
+    }
+
+    // returns the time a maxAdAge check has to be scheduled for, or 0 if the one already scheduled comes first
+    // (or no held ad has a deadline)
+    synchronized long claimAgeCheck() {
+        long next = 0;
+        for (PooledAd pooled : adPool) {
+            if ((pooled.expiryDeadline != 0) && ((next == 0) || (pooled.expiryDeadline < next))) {
+                next = pooled.expiryDeadline;
+            }
+        }
+        if ((next == 0) || ((ageCheckTime != 0) && (ageCheckTime <= next))) {
+            return 0;
+        }
+        ageCheckTime = next;
+        return next;
+    }
+
+    // returns true if the check scheduled for this time is still the current one, and marks it as run
+    synchronized boolean startAgeCheck(long time) {
+        if (ageCheckTime != time) {
+            return false;
+        }
+        ageCheckTime = 0;
+        return true;
+    }
+
+    // forgets the scheduled check (its task has been cancelled)
+    synchronized void clearAgeCheck() {
+        ageCheckTime = 0;
+    }
+
+    // detaches and drops every pooled ad
+    synchronized void releaseAds() {
+        PooledAd pooled;
+        while ((pooled = adPool.poll()) != null) {
+            heldAds.decrementAndGet();
+            pooled.ad.setListener(null);
+        }
+        for (AdColonyInterstitial ad : overdueAds) {
+            ad.setListener(null);
+        }
+        overdueAds.clear();
+        showingAds.set(0);
+        pendingRequests.set(0);
+        lastAdExpired = false;
+        showOnFillDeadline = 0;
+        ageCheckTime = 0;
+        publishState();
+    }
+
+    synchronized void requestStarted() {
+        pendingRequests.incrementAndGet();
+        publishState();
+    }
+
+    synchronized void requestFinished() {
+        if (pendingRequests.get() > 0) {
+            pendingRequests.decrementAndGet();
+        }
+        publishState();
+    }
+
+    // an ad returned by takeAd() has closed or could not be shown
+    synchronized void showFinished() {
+        if (showingAds.get() > 0) {
+            showingAds.decrementAndGet();
+        }
+        publishState();
+    }
+
+    // recomputes the state word from the pool (caller holds the lock)
+    private void publishState() {
+        PooledAd head = adPool.peek();
+        State newState;
+        if (head != null) {
+            // takeAd() skips ads past their deadline, so the zone is ready until the last one has passed
+            long lastDeadline = 0;
+            for (PooledAd pooled : adPool) {
+                if (pooled.expiryDeadline == 0) {
+                    lastDeadline = 0;
+                    break;
+                }
+                lastDeadline = Math.max(lastDeadline, pooled.expiryDeadline);
+            }
+            newState = new State(STATE_READY, head.fillTime, lastDeadline);
+        } else if (showingAds.get() > 0) {
+            newState = new State(STATE_SHOWING, 0, 0);
+        } else if (pendingRequests.get() > 0) {
+            newState = new State(STATE_LOADING, 0, 0);
+        } else if (lastAdExpired) {
+            newState = new State(STATE_EXPIRED, 0, 0);
+        } else {
+            newState = State.EMPTY;
+        }
+        state.set(newState);
+    }
+
+    int getHeldAds() {
+        return heldAds.get();
+    }
+
+    int getPendingRequests() {
+        return pendingRequests.get();
+    }
+
+    // true if a request has been sent and not answered yet
+    boolean isRequestPending() {
+        return pendingRequests.get() > 0;
+    }
+
+    // true if held and pending ads don't fill the pool yet
+    boolean needsRefill() {
+        return (heldAds.get() + pendingRequests.get()) < poolSize;
+    }
+
+    // returns the backoff step for the next no-fill retry, or -1 once maxRetries is reached
+    int nextReloadRetry(int maxRetries) {
+        int retry;
+        do {
+            retry = reloadRetries.get();
+            if (retry >= maxRetries) {
+                return -1;
+            }
+        } while (!reloadRetries.compareAndSet(retry, retry + 1));
+        return retry;
+    }
+
+    void resetReloadRetries() {
+        reloadRetries.set(0);
+    }
+
+    // returns false if a reload is already queued for this zone
+    boolean markReloadScheduled() {
+        return reloadScheduled.compareAndSet(false, true);
+    }
+
+    void clearReloadScheduled() {
+        reloadScheduled.set(false);
+    }
+
+    void markReleasedForMemory() {
+        releasedForMemory.set(true);
+    }
+
+    // returns true once if ads were dropped on memory pressure since the last call
+    boolean takeReleasedForMemory() {
+        return releasedForMemory.getAndSet(false);
+    }
+
+    // shows the next filled ad right away if it arrives before the deadline (replaces an earlier request)
+    // returns true if it replaces a show that was still waiting
+    synchronized boolean requestShowOnFill(long deadline) {
+        boolean replaced = (showOnFillDeadline != 0);
+        showOnFillDeadline = deadline;
+        return replaced;
+    }
+
+    // returns true once if a fill arriving now should be shown (a missed deadline is left for cancelShowOnFill())
+    synchronized boolean takeShowOnFill(long now) {
+        if ((showOnFillDeadline == 0) || (now >= showOnFillDeadline)) {
+            return false;
+        }
+        showOnFillDeadline = 0;
+        return true;
+    }
+
+    // withdraws the waiting show with the given deadline (any for 0), returns true if it was still waiting
+    synchronized boolean cancelShowOnFill(long deadline) {
+        if ((showOnFillDeadline == 0) || ((deadline != 0) && (deadline != showOnFillDeadline))) {
+            return false;
+        }
+        showOnFillDeadline = 0;
+        return true;
+    }
+
+    // supersedes any queued prefetch, returns the new one's generation
+    int nextPrefetch() {
+        return prefetchGeneration.incrementAndGet();
+    }
+
+    boolean isLatestPrefetch(int generation) {
+        return prefetchGeneration.get() == generation;
+    }
+
+    synchronized long getLastShowTime() {
+        return lastShowTime;
+    }
+
+    synchronized void recordShow(long now) {
+        if (lastShowTime > 0) {
+            long interval = Math.min(MAX_SHOW_INTERVAL_MS, now - lastShowTime);
+            showIntervalMs = (showIntervalMs == 0) ? interval : showIntervalMs + CADENCE_WEIGHT * (interval - showIntervalMs);
+        }
+        lastShowTime = now;
+    }
+
+    // average time from request to fill in milliseconds (0 until the first fill)
+    synchronized double getFillLatency() {
+        return fillLatencyMs;
+    }
+
+    synchronized void recordFillLatency(long latencyMs) {
+        fillLatencyMs = (fillLatencyMs == 0) ? latencyMs : fillLatencyMs + CADENCE_WEIGHT * (latencyMs - fillLatencyMs);
+    }
+
+    // milliseconds until a request should be sent so that an ad is filled leadMs before the next expected show
+    // (0 while the cadence is unknown)
+    synchronized long getPrefetchDelay(long now, long leadMs) {
+        if (showIntervalMs == 0) {
+            return 0;
+        }
+
+        // allow twice the usual fill latency
+        long requestTime = lastShowTime + (long) showIntervalMs - (long) (2 * fillLatencyMs) - leadMs;
+        return Math.max(0, requestTime - now);
+    }
+}